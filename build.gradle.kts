@@ -2,6 +2,7 @@ plugins {
     java
     id("org.springframework.boot") version "3.5.5"
     id("io.spring.dependency-management") version "1.1.7"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "rotld"
@@ -47,6 +48,11 @@ dependencies {
     testImplementation("org.springframework.boot:spring-boot-starter-test")
 }
 
+// benchmark-uri în src/jmh/java: ./gradlew jmh
+jmh {
+    jmhVersion.set("1.37")
+}
+
 tasks.withType<Test> {
     useJUnitPlatform()
 }
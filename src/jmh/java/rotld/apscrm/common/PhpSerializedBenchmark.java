@@ -0,0 +1,85 @@
+package rotld.apscrm.common;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Vechiul parser cu regex (PhpSerialized / D177Service.parsePhpMap) față de decoder-ul cu lungimi, pe un blob
+ * de firmă de 12 perechi, cu diacritice. Rulare: {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhpSerializedBenchmark {
+
+    /* regex-ul din PhpSerialized înainte de decoder */
+    private static final Pattern PAIR = Pattern.compile("s:\\d+:\"([^\"]*)\";s:\\d+:\"([^\"]*)\";");
+
+    /* varianta leneșă din D177Service.parsePhpMap */
+    private static final Pattern PAIR_LAZY = Pattern.compile("s:\\d+:\"(.*?)\";s:\\d+:\"(.*?)\";", Pattern.DOTALL);
+
+    private String blob;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        Map<String, String> firma = new LinkedHashMap<>();
+        firma.put("denumire", "Asociația Prietenii Sănătății Iași");
+        firma.put("cui", "RO12345678");
+        firma.put("reg_com", "J22/1234/2015");
+        firma.put("adresa", "Str. Ștefan cel Mare nr. 12, bl. A3, ap. 4");
+        firma.put("oras", "Iași");
+        firma.put("judet", "Iași");
+        firma.put("cod_postal", "700028");
+        firma.put("iban", "RO49AAAA1B31007593840000");
+        firma.put("banca", "Banca Transilvania");
+        firma.put("email", "contact@prieteniisanatatii.ro");
+        firma.put("tel", "0232 123 456");
+        firma.put("reprezentant", "Ioana Popescu-Țurcanu");
+
+        StringBuilder sb = new StringBuilder("a:").append(firma.size()).append(":{");
+        firma.forEach((k, v) -> sb.append(str(k)).append(str(v)));
+        blob = sb.append('}').toString();
+        bytes = blob.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String str(String s) {
+        return "s:" + s.getBytes(StandardCharsets.UTF_8).length + ":\"" + s + "\";";
+    }
+
+    @Benchmark
+    public Map<String, String> regex() {
+        return regex(PAIR, blob);
+    }
+
+    @Benchmark
+    public Map<String, String> regexLazy() {
+        return regex(PAIR_LAZY, blob);
+    }
+
+    @Benchmark
+    public Map<String, String> decoderString() {
+        return PhpSerialized.parseAssoc(blob);
+    }
+
+    @Benchmark
+    public Map<String, String> decoderBytes() {
+        return PhpSerialized.parseAssoc(bytes);
+    }
+
+    private static Map<String, String> regex(Pattern pattern, String s) {
+        Map<String, String> map = new LinkedHashMap<>();
+        Matcher m = pattern.matcher(s);
+        while (m.find()) map.put(m.group(1), m.group(2));
+        return map;
+    }
+}
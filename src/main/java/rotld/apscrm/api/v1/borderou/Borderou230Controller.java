@@ -5,11 +5,17 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import rotld.apscrm.api.v1.borderou.dto.BorderouAssignmentProgress;
+import rotld.apscrm.api.v1.borderou.dto.BorderouValidationReport;
 import rotld.apscrm.api.v1.borderou.service.Borderou230Service;
+import rotld.apscrm.api.v1.borderou.service.BorderouAssignmentService;
 
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequiredArgsConstructor
@@ -17,6 +23,7 @@ import java.util.List;
 public class Borderou230Controller {
 
     private final Borderou230Service service;
+    private final BorderouAssignmentService assignments;
 
     public static class GenerateRequest {
         public List<Integer> ids;
@@ -25,16 +32,46 @@ public class Borderou230Controller {
     }
 
     @PostMapping("/borderou")
-    public ResponseEntity<byte[]> generate(@RequestBody GenerateRequest body){
+    public ResponseEntity<StreamingResponseBody> generate(@RequestBody GenerateRequest body){
         LocalDate date = (body.date != null) ? body.date : LocalDate.now();
         var gen = service.generateForIds(body.ids, date);
 
         String filename = "borderou230-" + gen.id() + ".xml";
-        byte[] bytes = gen.xml().getBytes(StandardCharsets.UTF_8);
 
         HttpHeaders h = new HttpHeaders();
         h.setContentType(MediaType.APPLICATION_XML);
         h.setContentDisposition(ContentDisposition.attachment().filename(filename).build());
-        return new ResponseEntity<>(bytes, h, HttpStatus.OK);
+        // detaliile: GET /borderou/{id}/validation
+        Boolean valid = gen.validation().valid();
+        h.set("X-Borderou-Valid", valid == null ? "unknown" : String.valueOf(valid));
+
+        // XML-ul e deja salvat (gzip); aici doar îl decomprimăm spre client, fără să-l ținem în memorie
+        StreamingResponseBody stream = out -> {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(gen.gzFile()), 64 * 1024)) {
+                in.transferTo(out);
+            } finally {
+                Files.deleteIfExists(gen.gzFile());
+            }
+        };
+        return new ResponseEntity<>(stream, h, HttpStatus.OK);
+    }
+
+    /** Cât din borderou are deja nr_borderou scris pe formulare. */
+    @GetMapping("/borderou/{id}/assignment")
+    public BorderouAssignmentProgress assignment(@PathVariable Integer id){
+        return assignments.progress(id);
+    }
+
+    /** Reia acum atribuirea nr_borderou (altfel se reia automat periodic). */
+    @PostMapping("/borderou/{id}/assignment/resume")
+    public BorderouAssignmentProgress resumeAssignment(@PathVariable Integer id){
+        return assignments.assign(id);
+    }
+
+    /** Raportul de validare (XSD + CNP / IBAN) salvat la generare; 204 pentru borderourile vechi. */
+    @GetMapping("/borderou/{id}/validation")
+    public ResponseEntity<BorderouValidationReport> validation(@PathVariable Integer id){
+        BorderouValidationReport report = service.validation(id);
+        return report == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(report);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,9 @@
+package rotld.apscrm.api.v1.borderou.dto;
+
+/**
+ * @param total     formulare în borderou
+ * @param assigned  formulare cu nr_borderou deja scris pe wp_posts
+ * @param running   scrierea e în curs pe instanța asta
+ */
+public record BorderouAssignmentProgress(Integer borderouId, int total, int assigned, boolean running) {
+}
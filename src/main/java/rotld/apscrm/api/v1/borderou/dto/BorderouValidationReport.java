@@ -0,0 +1,20 @@
+package rotld.apscrm.api.v1.borderou.dto;
+
+import java.util.List;
+
+/**
+ * @param valid          true = validat cu XSD, fără erori și fără rânduri cu CNP / IBAN invalid; false = are erori;
+ *                       null = necunoscut (fără XSD, dar rândurile sunt în regulă)
+ * @param schemaChecked  false dacă B230.xsd nu e disponibil (s-au făcut doar verificările pe rânduri)
+ * @param declarations   câte {@code declaratie230} au fost citite
+ * @param schemaErrors   erorile XSD (primele {@code MAX_ERRORS})
+ * @param rowIssues      rândurile cu probleme (primele {@code MAX_ERRORS})
+ * @param rowIssueCount  numărul total de probleme pe rânduri
+ */
+public record BorderouValidationReport(Boolean valid, boolean schemaChecked, int declarations,
+                                       List<String> schemaErrors, List<RowIssue> rowIssues,
+                                       int rowIssueCount, long durationMs) {
+
+    /** @param field "cif_c" sau "cont_entitate" */
+    public record RowIssue(int nrPoz, String field, String value, String message) {}
+}
@@ -15,6 +15,19 @@ public class Borderou {
     @Column(name="borderou_date", nullable=false)
     private LocalDate dataBorderou;
 
-    @Lob @Column(name = "value", nullable=false)
+    /** XML-ul vechi, necomprimat (borderourile generate înainte de value_gz) */
+    @Lob @Column(name = "value")
     private String xml;
+
+    /** XML-ul gzip; scris în streaming prin JDBC, nu încărcat odată cu entitatea */
+    @Lob @Basic(fetch = FetchType.LAZY) @Column(name = "value_gz")
+    private byte[] xmlGz;
+
+    /** null = nevalidat (borderouri vechi) */
+    @Column(name = "valid")
+    private Boolean valid;
+
+    /** raportul de validare, JSON ({@code BorderouValidationReport}) */
+    @Lob @Column(name = "validation_report")
+    private String validationReport;
 }
\ No newline at end of file
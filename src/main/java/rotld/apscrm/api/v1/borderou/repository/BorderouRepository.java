@@ -12,8 +12,4 @@ public interface BorderouRepository extends JpaRepository<Borderou, Integer> {
     @Transactional
     @Query(value = "UPDATE wordpress.wp_posts SET nr_borderou = ?2 WHERE ID = ?1", nativeQuery = true)
     void setBorderou(Integer postId, Integer borderouId);
-
-    @Modifying @Transactional
-    @Query(value = "UPDATE wordpress.wp_posts SET nr_borderou = ?2 WHERE ID IN (?1)", nativeQuery = true)
-    void setBorderouForIds(java.util.List<Integer> ids, Integer borderouId);
 }
\ No newline at end of file
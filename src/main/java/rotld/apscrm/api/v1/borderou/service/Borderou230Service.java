@@ -1,128 +1,280 @@
 package rotld.apscrm.api.v1.borderou.service;
 
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.support.SqlBinaryValue;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import rotld.apscrm.api.v1.borderou.dto.BorderouValidationReport;
 import rotld.apscrm.api.v1.borderou.repository.Borderou;
 import rotld.apscrm.api.v1.borderou.repository.BorderouRepository;
 import rotld.apscrm.api.v1.borderou.repository.CrmSettingRepository;
-import rotld.apscrm.api.v1.f230.repository.F230;
-import rotld.apscrm.api.v1.f230.repository.F230Repository;
+import rotld.apscrm.api.v1.f230.repository.F230BorderouRepository;
 
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Generarea borderoului 230 (XML ANAF) în streaming.
+ * <p>
+ * Id-ul borderoului (nr_borderou) se rezervă primul, cu un insert în crm.borderouri (tranzacție scurtă, proprie);
+ * apoi, fără tranzacție deschisă, formularele se citesc
+ * în loturi de {@code app.borderou.chunk-size} id-uri (în ordinea selecției, pentru nr_poz) și fiecare
+ * {@code declaratie230} se scrie imediat printr-un {@link XMLStreamWriter} într-un fișier temporar gzip.
+ * Fișierul se salvează în {@code value_gz} tot în streaming, deci memoria nu crește cu numărul de formulare.
+ * Doar salvarea fișierului + raportului și lista formularelor sunt într-o a doua tranzacție scurtă – generarea și
+ * validarea (minute, la loturile mari din mai) nu țin o conexiune și lock-uri deschise. Dacă generarea eșuează,
+ * rândul rezervat se șterge.
+ * <p>
+ * Înainte de salvare, fișierul trece prin {@link Borderou230Validator} (XSD + CNP / IBAN); raportul se salvează
+ * lângă XML, în {@code valid} / {@code validation_report}. Un borderou invalid se salvează oricum – raportul spune de ce.
+ * <p>
+ * nr_borderou pe wp_posts se scrie după commit, pe loturi, prin {@link BorderouAssignmentService}.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class Borderou230Service {
 
+    private static final XMLOutputFactory XML_OUTPUT = XMLOutputFactory.newFactory();
+    private static final String XSI = "http://www.w3.org/2001/XMLSchema-instance";
+
     private final BorderouRepository borderouRepo;
     private final CrmSettingRepository settingsRepo;
-    private final F230Repository f230Repo;
+    private final F230BorderouRepository f230Repo;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final Borderou230Validator validator;
+    private final ObjectMapper om;
+    private final BorderouAssignmentService assignments;
+    private final TransactionTemplate tx;
+
+    @Value("${app.borderou.chunk-size:500}")
+    private int chunkSize;
 
     private String getSetting(String key, String def){
         return settingsRepo.findByName(key).map(s -> (s.getValue()!=null && !s.getValue().isBlank()) ? s.getValue() : s.getDefaultValue())
                 .orElse(def);
     }
 
-    private static String xmlEscape(String s){
-        if (s == null) return "";
-        return s.replace("&","&amp;").replace("<","&lt;").replace(">","&gt;")
-                .replace("\"","&quot;").replace("'","&apos;");
-    }
+    /** Antetul borderoului, din crm_settings. */
+    private record Header(String xmlns, String schemaLocation, int luna, int an, String den, String cif) {}
 
-    @Transactional
+    /**
+     * Generează borderoul pentru id-urile date (ordinea lor dă nr_poz).
+     * Fișierul gzip întors e temporar – apelantul îl trimite clientului și îl șterge.
+     */
     public GeneratedXml generateForIds(List<Integer> ids, LocalDate dataBorderou){
         if (ids == null || ids.isEmpty())
             throw new IllegalArgumentException("Lista de ID-uri este goală.");
 
-        // Config din crm_settings
+        Header header = header(dataBorderou);
+        // 1. rezervăm nr_borderou – XML-ul se scrie direct cu id-ul final, fără replace / al doilea save
+        Integer borderouId = tx.execute(status ->
+                borderouRepo.saveAndFlush(Borderou.builder().dataBorderou(dataBorderou).build()).getId());
+        GeneratedXml gen;
+        try {
+            gen = generate(borderouId, ids, dataBorderou, header);
+        } catch (RuntimeException e) {
+            discardReservation(borderouId);
+            throw e;
+        }
+        // după commit: nr_borderou pe wp_posts, în fundal, în loturi scurte (reluat automat dacă se întrerupe)
+        assignments.assignAsync(gen.id());
+        return gen;
+    }
+
+    private GeneratedXml generate(Integer borderouId, List<Integer> ids, LocalDate dataBorderou, Header header){
+        long start = System.currentTimeMillis();
+        List<Integer> selected = ids.stream().filter(Objects::nonNull).distinct().toList();
+
+        // 2. doar id-urile care sunt formulare 230 publicate (totalPlata_A e în antet, înaintea rândurilor)
+        List<Integer> present = presentInOrder(selected);
+
+        // 3. XML în streaming → fișier gzip
+        Path file;
+        try {
+            file = Files.createTempFile("borderou230-" + borderouId + "-", ".xml.gz");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        BorderouValidationReport report;
+        try {
+            writeXml(file, borderouId, dataBorderou, header, present);
+            report = validator.validate(file);
+            // 4. fișierul + raportul și formularele borderoului (pentru atribuirea nr_borderou), împreună
+            tx.executeWithoutResult(status -> {
+                store(borderouId, file, report);
+                assignments.enqueue(borderouId, present);
+            });
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            deleteQuietly(file);
+            if (e instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Nu am putut genera borderoul " + borderouId + ": " + e.getMessage(), e);
+        }
+
+        log.info("Borderou 230 #{}: {} declarații ({} id-uri cerute) în {} ms",
+                borderouId, present.size(), selected.size(), System.currentTimeMillis() - start);
+        return new GeneratedXml(borderouId, file, dataBorderou, report);
+    }
+
+    /** Raportul salvat la generare; null pentru borderourile generate înainte de validare. */
+    @Transactional(readOnly = true)
+    public BorderouValidationReport validation(Integer borderouId){
+        Borderou b = borderouRepo.findById(borderouId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Borderou not found: " + borderouId));
+        if (b.getValidationReport() == null) return null;
+        try {
+            return om.readValue(b.getValidationReport(), BorderouValidationReport.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Raport de validare corupt pentru borderoul " + borderouId, e);
+        }
+    }
+
+    private Header header(LocalDate dataBorderou){
         String xmlns          = getSetting("xmlns",          "mfp:anaf:dgti:b230:declaratie:v1");
         String schemaLocation = getSetting("schemaLocation", "mfp:anaf:dgti:b230:declaratie:v1 B230.xsd");
         String xmlLunaStr     = getSetting("xml_luna",       String.valueOf(dataBorderou.getMonthValue()));
         String xmlAnStr       = getSetting("xml_an",         String.valueOf(dataBorderou.getYear()));
         String den            = getSetting("xml_nume",       "Asociația ACȚIUNE PENTRU SĂNĂTATE");
         String cifEntitate    = getSetting("xml_cif",        getSetting("xml_cui", "43771157"));
+        return new Header(xmlns, schemaLocation, Integer.parseInt(xmlLunaStr.trim()), Integer.parseInt(xmlAnStr.trim()),
+                den, cifEntitate);
+    }
+
+    private List<Integer> presentInOrder(List<Integer> selected){
+        Set<Integer> existing = new HashSet<>();
+        for (List<Integer> chunk : chunks(selected)) existing.addAll(f230Repo.existingIds(chunk));
+        return selected.stream().filter(existing::contains).toList();
+    }
+
+    private void writeXml(Path file, Integer borderouId, LocalDate dataBorderou, Header h, List<Integer> present)
+            throws IOException, XMLStreamException {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file), 64 * 1024), StandardCharsets.UTF_8), 64 * 1024)) {
+            XMLStreamWriter x = XML_OUTPUT.createXMLStreamWriter(w);
+            x.writeStartDocument("UTF-8", "1.0");
+            x.writeCharacters("\n");
 
-        int xmlLuna = Integer.parseInt(xmlLunaStr.trim());
-        int xmlAn   = Integer.parseInt(xmlAnStr.trim());
-
-        // Date selectate (în ordinea ID-urilor date)
-        List<F230> rows = f230Repo.findAllById(ids);
-        // re-ordonează ca în input
-        Map<Integer, F230> map = rows.stream().collect(Collectors.toMap(F230::getId, r -> r));
-        List<F230> ordered = ids.stream().map(map::get).filter(Objects::nonNull).toList();
-
-        // Formate
-        String dataAttr = dataBorderou.format(DateTimeFormatter.ofPattern("dd.MM.yyyy"));
-
-        // Construim XML în memorie (id-ul borderoului îl aflăm după insert -> auto-increment)
-        StringBuilder sb = new StringBuilder(16384);
-        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-
-        // Inserăm temporar nr_borderou="0", îl înlocuim după ce avem id-ul real (sau refacem stringul)
-        sb.append("<borderou230 xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"")
-                .append(" xmlns=\"").append(xmlEscape(xmlns)).append("\"")
-                .append(" xsi:schemaLocation=\"").append(xmlEscape(schemaLocation)).append("\"")
-                .append(" nr_borderou=\"").append("0").append("\"")
-                .append(" data_borderou=\"").append(xmlEscape(dataAttr)).append("\"")
-                .append(" luna=\"").append(xmlLuna).append("\"")
-                .append(" an=\"").append(xmlAn).append("\"")
-                .append(" den=\"").append(xmlEscape(den)).append("\"")
-                .append(" den_i=\"").append(xmlEscape(den)).append("\"")
-                .append(" adresa_i=\"").append(xmlEscape(den)).append("\"")   // dacă vrei alt câmp pentru adresă, schimbă aici
-                .append(" cui=\"").append(xmlEscape(cifEntitate)).append("\"")
-                .append(" cif_i=\"").append(xmlEscape(cifEntitate)).append("\"")
-                .append(" totalPlata_A=\"").append(ordered.size()).append("\">").append("\n\n");
-
-        int nrPoz = 1;
-        for (F230 r : ordered){
-            String cif_c   = r.getCnp(); // meta 'cnp'; dacă e null, pune gol
-            String nume    = r.getFirstName();
-            String prenume = r.getLastName();
-            String iban    = r.getIban();
-            boolean acord  = "1".equals((r.getAcordEmail()==null?"":r.getAcordEmail()).trim());
-            boolean twoY   = "1".equals((r.getDistrib2()==null?"":r.getDistrib2()).trim());
-
-            sb.append("  <declaratie230")
-                    .append(" cif_c=\"").append(xmlEscape(cif_c)).append("\"")
-                    .append(" nr_poz=\"").append(nrPoz).append("\"")
-                    .append(" nume_c=\"").append(xmlEscape(nume)).append("\"")
-                    .append(" prenume_c=\"").append(xmlEscape(prenume)).append("\">").append("\n")
-                    .append("    <bursa_entit bifa_entitate=\"1\"")
-                    .append(" den_entitate=\"").append(xmlEscape(den)).append("\"")
-                    .append(" cif_entitate=\"").append(xmlEscape(cifEntitate)).append("\"")
-                    .append(" cont_entitate=\"").append(xmlEscape(iban)).append("\"")
-                    .append(" acord=\"").append(acord ? "1" : "0").append("\"")
-                    .append(" valabilitate_distribuire=\"").append(twoY ? "2" : "1").append("\"")
-                    .append("/>").append("\n")
-                    .append("  </declaratie230>").append("\n");
-            nrPoz++;
+            x.writeStartElement("borderou230");
+            x.writeNamespace("xsi", XSI);
+            x.writeDefaultNamespace(h.xmlns());
+            x.writeAttribute("xsi", XSI, "schemaLocation", h.schemaLocation());
+            x.writeAttribute("nr_borderou", String.valueOf(borderouId));
+            x.writeAttribute("data_borderou", dataBorderou.format(DateTimeFormatter.ofPattern("dd.MM.yyyy")));
+            x.writeAttribute("luna", String.valueOf(h.luna()));
+            x.writeAttribute("an", String.valueOf(h.an()));
+            x.writeAttribute("den", h.den());
+            x.writeAttribute("den_i", h.den());
+            x.writeAttribute("adresa_i", h.den());   // dacă vrei alt câmp pentru adresă, schimbă aici
+            x.writeAttribute("cui", h.cif());
+            x.writeAttribute("cif_i", h.cif());
+            x.writeAttribute("totalPlata_A", String.valueOf(present.size()));
+            x.writeCharacters("\n\n");
+
+            int nrPoz = 1;
+            for (List<Integer> chunk : chunks(present)) {
+                Map<Integer, F230BorderouRepository.Row> rows = f230Repo.findRows(chunk).stream()
+                        .collect(Collectors.toMap(F230BorderouRepository.Row::id, Function.identity()));
+                for (Integer id : chunk) {
+                    F230BorderouRepository.Row r = rows.get(id);
+                    if (r == null) continue; // șters între timp
+                    writeDeclaratie(x, r, nrPoz++, h);
+                }
+                x.flush();
+            }
+
+            x.writeEndElement();
+            x.writeEndDocument();
+            x.close();
         }
+    }
+
+    private static void writeDeclaratie(XMLStreamWriter x, F230BorderouRepository.Row r, int nrPoz, Header h)
+            throws XMLStreamException {
+        boolean acord = "1".equals(nz(r.acordEmail()).trim());
+        boolean twoY  = "1".equals(nz(r.distrib2()).trim());
 
-        sb.append("</borderou230>");
+        x.writeCharacters("  ");
+        x.writeStartElement("declaratie230");
+        x.writeAttribute("cif_c", nz(r.cnp()));
+        x.writeAttribute("nr_poz", String.valueOf(nrPoz));
+        x.writeAttribute("nume_c", nz(r.firstName()));
+        x.writeAttribute("prenume_c", nz(r.lastName()));
+        x.writeCharacters("\n    ");
+        x.writeEmptyElement("bursa_entit");
+        x.writeAttribute("bifa_entitate", "1");
+        x.writeAttribute("den_entitate", h.den());
+        x.writeAttribute("cif_entitate", h.cif());
+        x.writeAttribute("cont_entitate", nz(r.iban()));
+        x.writeAttribute("acord", acord ? "1" : "0");
+        x.writeAttribute("valabilitate_distribuire", twoY ? "2" : "1");
+        x.writeCharacters("\n  ");
+        x.writeEndElement();
+        x.writeCharacters("\n");
+    }
+
+    /** Generarea a eșuat după rezervare: rândul gol nu trebuie să rămână în listă (id-ul rămâne nefolosit). */
+    private void discardReservation(Integer borderouId){
+        try {
+            tx.executeWithoutResult(status -> borderouRepo.deleteById(borderouId));
+        } catch (RuntimeException e) {
+            log.warn("Borderou #{}: nu am putut șterge rezervarea după eșec: {}", borderouId, e.getMessage());
+        }
+    }
 
-        // Salvăm în borderouri pentru a obține id-ul (nr_borderou)
-        Borderou entity = Borderou.builder()
-                .dataBorderou(dataBorderou)
-                .xml(sb.toString()) // temporar fără nr real
-                .build();
-        entity = borderouRepo.save(entity);
-        Integer borderouId = entity.getId();
+    /** Fișierul gzip în crm.borderouri.value_gz (citit în streaming de driver) + raportul de validare. */
+    private void store(Integer borderouId, Path file, BorderouValidationReport report) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            jdbc.update("""
+                  UPDATE crm.borderouri SET value_gz = :gz, valid = :valid, validation_report = :report
+                  WHERE id = :id
+                """,
+                    new MapSqlParameterSource()
+                            .addValue("gz", new SqlBinaryValue(in, Files.size(file)))
+                            .addValue("valid", report.valid())
+                            .addValue("report", om.writeValueAsString(report))
+                            .addValue("id", borderouId));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        // Actualizăm nr_borderou pe postările selectate (suprascrie existing)
-        borderouRepo.setBorderouForIds(ids, borderouId);
+    private List<List<Integer>> chunks(List<Integer> ids){
+        List<List<Integer>> out = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += chunkSize) out.add(ids.subList(i, Math.min(i + chunkSize, ids.size())));
+        return out;
+    }
 
-        // Re-scriem XML cu nr_borderou corect (sau înlocuire simplă)
-        String xml = entity.getXml().replace("nr_borderou=\"0\"", "nr_borderou=\"" + borderouId + "\"");
-        entity.setXml(xml);
-        borderouRepo.save(entity);
+    private static String nz(String s){
+        return s == null ? "" : s;
+    }
 
-        return new GeneratedXml(borderouId, xml, dataBorderou);
+    private static void deleteQuietly(Path file){
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) { }
     }
 
-    public record GeneratedXml(Integer id, String xml, LocalDate date) {}
-}
\ No newline at end of file
+    /** @param gzFile XML-ul comprimat (fișier temporar, de șters după trimitere) */
+    public record GeneratedXml(Integer id, Path gzFile, LocalDate date, BorderouValidationReport validation) {}
+}
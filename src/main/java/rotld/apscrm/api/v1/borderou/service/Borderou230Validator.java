@@ -0,0 +1,256 @@
+package rotld.apscrm.api.v1.borderou.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import org.xml.sax.*;
+import org.xml.sax.helpers.DefaultHandler;
+import rotld.apscrm.api.v1.borderou.dto.BorderouValidationReport;
+import rotld.apscrm.api.v1.borderou.dto.BorderouValidationReport.RowIssue;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Validarea borderoului 230 generat, într-o singură trecere SAX peste fișierul gzip (fără DOM):
+ * <ul>
+ *   <li>XSD-ul ANAF ({@code app.borderou.xsd-location}), compilat o singură dată – {@link Schema} e thread-safe;</li>
+ *   <li>CNP (cifra de control) și IBAN (mod 97) pe fiecare {@code declaratie230}: rândurile se adună în partiții
+ *       de {@code app.borderou.validation-partition-size} și se verifică în paralel, cât timp parsarea continuă.</li>
+ * </ul>
+ * Fără XSD configurat rămân doar verificările pe rânduri ({@code schemaChecked = false}), iar un borderou fără
+ * probleme pe rânduri are {@code valid = null} (necunoscut), nu {@code true}. Un XSD configurat dar lipsă /
+ * necompilabil oprește pornirea aplicației.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class Borderou230Validator {
+
+    static final int MAX_ERRORS = 200;
+
+    private static final int[] CNP_WEIGHTS = {2, 7, 9, 1, 4, 6, 3, 5, 8, 2, 7, 9};
+
+    private final ResourceLoader resourceLoader;
+
+    @Value("${app.borderou.xsd-location:}")
+    private String xsdLocation;
+
+    @Value("${app.borderou.validation-parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.borderou.validation-partition-size:2000}")
+    private int partitionSize;
+
+    private ExecutorService executor;
+
+    /** XSD-ul compilat la pornire; null = neconfigurat */
+    private Schema schema;
+
+    @PostConstruct
+    void init() {
+        schema = loadSchema();
+        executor = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("borderou-check-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Row(int nrPoz, String cnp, String iban) {}
+
+    public BorderouValidationReport validate(Path gzFile) {
+        long start = System.currentTimeMillis();
+        Schema xsd = schema;
+        List<String> schemaErrors = new ArrayList<>();
+        RowCollector rows = new RowCollector();
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gzFile), 64 * 1024)) {
+            // SAXParserFactory nu e garantat thread-safe: una per validare (costul e neglijabil față de parsare)
+            SAXParserFactory sax = SAXParserFactory.newInstance();
+            sax.setNamespaceAware(true);
+            XMLReader reader = sax.newSAXParser().getXMLReader();
+            ErrorHandler errors = new CollectingErrorHandler(schemaErrors);
+            if (xsd != null) {
+                ValidatorHandler vh = xsd.newValidatorHandler();
+                vh.setErrorHandler(errors);
+                vh.setContentHandler(rows);
+                reader.setContentHandler(vh);
+            } else {
+                reader.setContentHandler(rows);
+            }
+            reader.setErrorHandler(errors);
+            reader.parse(new InputSource(in));
+        } catch (SAXException e) {
+            // XML malformat: parsarea se oprește, dar raportul rămâne util
+            add(schemaErrors, "XML invalid: " + e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Validarea borderoului a eșuat: " + e.getMessage(), e);
+        }
+
+        List<RowIssue> issues = new ArrayList<>();
+        int issueCount = 0;
+        for (Future<List<RowIssue>> f : rows.finish()) {
+            List<RowIssue> partial = join(f);
+            issueCount += partial.size();
+            for (RowIssue i : partial) if (issues.size() < MAX_ERRORS) issues.add(i);
+        }
+
+        // fără XSD nu putem spune că borderoul e valid, doar că e invalid (dacă are probleme pe rânduri)
+        boolean clean = schemaErrors.isEmpty() && issueCount == 0;
+        Boolean valid = !clean ? Boolean.FALSE : xsd != null ? Boolean.TRUE : null;
+        BorderouValidationReport report = new BorderouValidationReport(
+                valid, xsd != null, rows.count,
+                schemaErrors, issues, issueCount, System.currentTimeMillis() - start);
+        log.info("Validare borderou: {} declarații, {} erori XSD, {} probleme pe rânduri în {} ms",
+                report.declarations(), schemaErrors.size(), issueCount, report.durationMs());
+        return report;
+    }
+
+    private Schema loadSchema() {
+        if (xsdLocation == null || xsdLocation.isBlank()) {
+            log.warn("Niciun XSD configurat pentru borderou (app.borderou.xsd-location) – validez doar CNP / IBAN");
+            return null;
+        }
+        Resource xsd = resourceLoader.getResource(xsdLocation);
+        if (!xsd.exists()) {
+            throw new IllegalStateException("XSD-ul pentru borderou nu există: " + xsdLocation);
+        }
+        try (InputStream in = xsd.getInputStream()) {
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            return factory.newSchema(new StreamSource(in, xsd.getURI().toString()));
+        } catch (IOException | SAXException e) {
+            throw new IllegalStateException("Nu am putut compila XSD-ul " + xsdLocation + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static List<RowIssue> join(Future<List<RowIssue>> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Validare întreruptă", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Verificarea rândurilor a eșuat: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static void add(List<String> errors, String message) {
+        if (errors.size() < MAX_ERRORS) errors.add(message);
+    }
+
+    private static List<RowIssue> check(List<Row> partition) {
+        List<RowIssue> out = new ArrayList<>();
+        for (Row r : partition) {
+            if (!validCnp(r.cnp())) out.add(new RowIssue(r.nrPoz(), "cif_c", r.cnp(), "CNP invalid"));
+            if (!validIban(r.iban())) out.add(new RowIssue(r.nrPoz(), "cont_entitate", r.iban(), "IBAN invalid"));
+        }
+        return out;
+    }
+
+    /** 13 cifre, prima 1–9, cifra de control = Σ(cifră × 279146358279) mod 11 (10 → 1). */
+    static boolean validCnp(String cnp) {
+        if (cnp == null || cnp.length() != 13 || cnp.charAt(0) == '0') return false;
+        int sum = 0;
+        for (int i = 0; i < 13; i++) {
+            char c = cnp.charAt(i);
+            if (c < '0' || c > '9') return false;
+            if (i < 12) sum += (c - '0') * CNP_WEIGHTS[i];
+        }
+        int control = sum % 11 == 10 ? 1 : sum % 11;
+        return control == cnp.charAt(12) - '0';
+    }
+
+    /** ISO 13616: primele 4 caractere mutate la final, litere → 10..35, mod 97 == 1 (RO: 24 caractere). */
+    static boolean validIban(String iban) {
+        if (iban == null) return false;
+        String s = iban.replace(" ", "").toUpperCase(Locale.ROOT);
+        if (s.length() < 15 || s.length() > 34) return false;
+        if (s.startsWith("RO") && s.length() != 24) return false;
+        int mod = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt((i + 4) % s.length());
+            if (c >= '0' && c <= '9') mod = (mod * 10 + (c - '0')) % 97;
+            else if (c >= 'A' && c <= 'Z') mod = (mod * 100 + (c - 'A' + 10)) % 97;
+            else return false;
+        }
+        return mod == 1;
+    }
+
+    /** Extrage (nr_poz, cif_c, cont_entitate) din evenimentele SAX și trimite partițiile la verificat. */
+    private final class RowCollector extends DefaultHandler {
+        private final List<Future<List<RowIssue>>> futures = new ArrayList<>();
+        private List<Row> partition = new ArrayList<>();
+        private int count;
+        private int nrPoz;
+        private String cnp;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            switch (localName) {
+                case "declaratie230" -> {
+                    count++;
+                    cnp = atts.getValue("cif_c");
+                    String poz = atts.getValue("nr_poz");
+                    try {
+                        nrPoz = poz == null ? count : Integer.parseInt(poz);
+                    } catch (NumberFormatException e) {
+                        nrPoz = count;
+                    }
+                }
+                case "bursa_entit" -> {
+                    partition.add(new Row(nrPoz, cnp, atts.getValue("cont_entitate")));
+                    if (partition.size() >= partitionSize) submit();
+                }
+                default -> { }
+            }
+        }
+
+        private void submit() {
+            List<Row> p = partition;
+            partition = new ArrayList<>();
+            futures.add(executor.submit(() -> check(p)));
+        }
+
+        List<Future<List<RowIssue>>> finish() {
+            if (!partition.isEmpty()) submit();
+            return futures;
+        }
+    }
+
+    private record CollectingErrorHandler(List<String> errors) implements ErrorHandler {
+        @Override
+        public void warning(SAXParseException e) { }
+
+        @Override
+        public void error(SAXParseException e) {
+            add(errors, "linia " + e.getLineNumber() + ", coloana " + e.getColumnNumber() + ": " + e.getMessage());
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package rotld.apscrm.api.v1.borderou.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import rotld.apscrm.api.v1.borderou.dto.BorderouAssignmentProgress;
+import rotld.apscrm.services.JobLockService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Scrierea nr_borderou pe wp_posts pentru formularele dintr-un borderou, pe loturi.
+ * <p>
+ * Lista formularelor e salvată în crm.borderou_posts odată cu borderoul; fiecare lot de
+ * {@code app.borderou.assign-chunk-size} id-uri e un UPDATE … WHERE ID IN (…) în tranzacția lui,
+ * care marchează și rândurile ca {@code assigned}. Lock-urile pe wp_posts țin doar cât un lot, iar o rulare
+ * întreruptă (restart, eroare) e reluată de {@link #resumePending()} exact de unde a rămas.
+ * <p>
+ * Toate atribuirile unei instanțe trec prin același worker cu un singur thread, inclusiv reluarea: un borderou
+ * pus în coadă dar încă nepornit e fie terminat înainte de reluare, fie găsit deja atribuit după ea.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BorderouAssignmentService {
+
+    private static final String INSERT_SQL = """
+      INSERT INTO crm.borderou_posts (borderou_id, post_id, nr_poz) VALUES (:borderouId, :postId, :nrPoz)
+    """;
+
+    private static final String NEXT_CHUNK_SQL = """
+      SELECT post_id FROM crm.borderou_posts
+      WHERE borderou_id = :borderouId AND assigned = 0
+      ORDER BY nr_poz
+      LIMIT :limit
+    """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final JobLockService jobLock;
+
+    private static final Duration RESUME_LEASE = Duration.ofHours(1);
+
+    @Value("${app.borderou.assign-chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.borderou.assign-pause-ms:0}")
+    private long pauseMs;
+
+    private final Set<Integer> running = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean resumeQueued = new AtomicBoolean();
+
+    private ExecutorService worker;
+
+    @PostConstruct
+    void init() {
+        worker = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("borderou-assign-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /** Înregistrează formularele borderoului (în tranzacția apelantului), în ordinea nr_poz. */
+    public void enqueue(Integer borderouId, List<Integer> postIds) {
+        for (int from = 0; from < postIds.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, postIds.size());
+            List<SqlParameterSource> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                batch.add(new MapSqlParameterSource()
+                        .addValue("borderouId", borderouId)
+                        .addValue("postId", postIds.get(i))
+                        .addValue("nrPoz", i + 1));
+            }
+            jdbc.batchUpdate(INSERT_SQL, batch.toArray(SqlParameterSource[]::new));
+        }
+    }
+
+    /**
+     * Scrie nr_borderou pe formularele încă neatribuite, lot cu lot.
+     * Dacă borderoul e deja în lucru pe instanța asta, nu face nimic.
+     */
+    public BorderouAssignmentProgress assign(Integer borderouId) {
+        if (!running.add(borderouId)) return progress(borderouId);
+        long start = System.currentTimeMillis();
+        int written = 0;
+        try {
+            while (true) {
+                Integer n = tx.execute(status -> assignNextChunk(borderouId));
+                if (n == null || n == 0) break;
+                written += n;
+                if (pauseMs > 0) Thread.sleep(pauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Borderou #{}: atribuire întreruptă după {} formulare; se reia automat", borderouId, written);
+        } catch (RuntimeException e) {
+            log.error("Borderou #{}: atribuire oprită după {} formulare ({}); se reia automat",
+                    borderouId, written, e.getMessage(), e);
+        } finally {
+            running.remove(borderouId);
+        }
+        if (written > 0) {
+            log.info("Borderou #{}: nr_borderou scris pe {} formulare în {} ms",
+                    borderouId, written, System.currentTimeMillis() - start);
+        }
+        return progress(borderouId);
+    }
+
+    /**
+     * Pornește {@link #assign} în fundal, fără să țină thread-ul apelantului. Formularele sunt deja în
+     * crm.borderou_posts (commit-ul apelantului), deci dacă execuția nu pornește sau se oprește,
+     * {@link #resumePending()} o reia.
+     */
+    public void assignAsync(Integer borderouId) {
+        try {
+            worker.execute(() -> assign(borderouId));
+        } catch (RejectedExecutionException e) {
+            log.warn("Borderou #{}: atribuirea nu a putut porni acum; se reia automat", borderouId);
+        }
+    }
+
+    public BorderouAssignmentProgress progress(Integer borderouId) {
+        return jdbc.queryForObject("""
+              SELECT COUNT(*) AS total, COALESCE(SUM(assigned), 0) AS assigned
+              FROM crm.borderou_posts WHERE borderou_id = :borderouId
+            """, new MapSqlParameterSource("borderouId", borderouId),
+                (rs, i) -> new BorderouAssignmentProgress(borderouId, rs.getInt("total"), rs.getInt("assigned"),
+                        running.contains(borderouId)));
+    }
+
+    /**
+     * Reia borderourile rămase cu formulare neatribuite (după restart / eroare). Reluarea rulează pe worker,
+     * nu pe thread-ul scheduler-ului, și pe un singur nod odată (lease {@code borderou-assign-resume}).
+     */
+    @Scheduled(fixedDelayString = "${app.borderou.assign-resume-ms:300000}",
+               initialDelayString = "${app.borderou.assign-resume-initial-ms:60000}")
+    public void resumePending() {
+        if (!resumeQueued.compareAndSet(false, true)) return;
+        try {
+            worker.execute(() -> {
+                resumeQueued.set(false);
+                try {
+                    jobLock.runExclusive("borderou-assign-resume", RESUME_LEASE, null, lease -> resume());
+                } catch (Exception e) {
+                    log.error("Reluarea atribuirilor nr_borderou a eșuat: {}", e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            resumeQueued.set(false);
+        }
+    }
+
+    private void resume() {
+        List<Integer> pending = jdbc.queryForList(
+                "SELECT DISTINCT borderou_id FROM crm.borderou_posts WHERE assigned = 0",
+                new MapSqlParameterSource(), Integer.class);
+        for (Integer borderouId : pending) {
+            if (Thread.currentThread().isInterrupted()) return;
+            log.info("Borderou #{}: reiau atribuirea nr_borderou", borderouId);
+            assign(borderouId);
+        }
+    }
+
+    private int assignNextChunk(Integer borderouId) {
+        List<Long> ids = jdbc.queryForList(NEXT_CHUNK_SQL,
+                new MapSqlParameterSource().addValue("borderouId", borderouId).addValue("limit", chunkSize), Long.class);
+        if (ids.isEmpty()) return 0;
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("borderouId", borderouId)
+                .addValue("ids", ids);
+        // un borderou reluat târziu nu suprascrie un borderou mai nou generat între timp pentru același formular
+        jdbc.update("""
+              UPDATE wordpress.wp_posts SET nr_borderou = :borderouId
+              WHERE ID IN (:ids) AND (nr_borderou IS NULL OR nr_borderou <= :borderouId)
+            """, params);
+        jdbc.update("""
+              UPDATE crm.borderou_posts SET assigned = 1
+              WHERE borderou_id = :borderouId AND post_id IN (:ids)
+            """, params);
+        return ids.size();
+    }
+}
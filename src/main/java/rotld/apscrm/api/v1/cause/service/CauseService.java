@@ -3,12 +3,16 @@ package rotld.apscrm.api.v1.cause.service;
 
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import rotld.apscrm.api.v1.kpi.service.KpiChangedEvent;
+import rotld.apscrm.api.v1.kpi.service.KpiSection;
 import rotld.apscrm.api.v1.cause.repository.Cause;
 import rotld.apscrm.api.v1.cause.repository.CauseRepository;
+import rotld.apscrm.common.Keyset;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +22,7 @@ import java.util.List;
 public class CauseService {
 
     private final CauseRepository repo;
+    private final ApplicationEventPublisher events;
 
     public Page<Cause> page(String q, Pageable pageable){
         if (q == null || q.isBlank()) {
@@ -38,9 +43,15 @@ public class CauseService {
         return repo.findAll(spec, pageable);
     }
 
+    /** Lot pentru export: rândurile cu id < beforeId (keyset, id descrescător). */
+    public List<Cause> exportBatch(Integer beforeId, int size){
+        return Keyset.batch(repo, beforeId, size);
+    }
+
     public void updateCauseAmount(Integer id, Double value, String operation) {
         if ("+".equals(operation)) {
             repo.addAmountToCause(id, value);
         } else repo.subtractAmountFromCause(id, value);
+        events.publishEvent(new KpiChangedEvent(KpiSection.CAUSES));
     }
 }
\ No newline at end of file
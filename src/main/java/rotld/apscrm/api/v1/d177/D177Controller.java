@@ -8,7 +8,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import rotld.apscrm.api.v1.d177.dto.D177DetailsDto;
 import rotld.apscrm.api.v1.d177.dto.D177ResponseDto;
+import rotld.apscrm.api.v1.d177.dto.FlagsBulkRequest;
+import rotld.apscrm.api.v1.d177.dto.FlagsBulkResultDto;
 import rotld.apscrm.api.v1.d177.service.D177Service;
+import rotld.apscrm.api.v1.d177.service.PostFlagsService;
 
 import java.util.Map;
 
@@ -18,6 +21,7 @@ import java.util.Map;
 public class D177Controller {
 
     private final D177Service service;
+    private final PostFlagsService flagsService;
 
     @GetMapping
     public org.springframework.data.domain.Page<D177ResponseDto> list(
@@ -25,6 +29,12 @@ public class D177Controller {
         return service.getPage(pageable);
     }
 
+    /** Aceleași flag-uri pe o listă de id-uri; rezultat per id. */
+    @PutMapping("/flags")
+    public FlagsBulkResultDto bulkFlags(@RequestBody FlagsBulkRequest body){
+        return flagsService.bulkUpdate("aps_s177", body);
+    }
+
     @PutMapping("/{id}/flags")
     public ResponseEntity<Void> updateFlags(@PathVariable Integer id, @RequestBody Map<String,Object> body){
         Boolean downloaded = body.containsKey("downloaded") ? (Boolean) body.get("downloaded") : null;
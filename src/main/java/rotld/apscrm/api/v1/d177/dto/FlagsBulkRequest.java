@@ -0,0 +1,11 @@
+package rotld.apscrm.api.v1.d177.dto;
+
+import java.util.List;
+
+/** Aceleași flag-uri pentru mai multe post-uri; null = neschimbat. */
+public record FlagsBulkRequest(
+    List<Integer> ids,
+    Boolean downloaded,
+    Boolean verified,
+    Boolean corrupt
+) {}
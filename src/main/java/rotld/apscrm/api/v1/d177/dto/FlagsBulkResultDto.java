@@ -0,0 +1,10 @@
+package rotld.apscrm.api.v1.d177.dto;
+
+import java.util.Map;
+
+/**
+ * @param updated  câte post-uri au fost scrise
+ * @param results  id → "updated" / "not_found" / "error", în ordinea din request
+ */
+public record FlagsBulkResultDto(int updated, Map<Integer, String> results) {
+}
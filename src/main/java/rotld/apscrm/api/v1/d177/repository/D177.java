@@ -2,6 +2,8 @@ package rotld.apscrm.api.v1.d177.repository;
 
 
 import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.Immutable;
@@ -9,6 +11,8 @@ import org.hibernate.annotations.Subselect;
 import org.hibernate.annotations.Synchronize;
 @Getter
 @NoArgsConstructor
+@AllArgsConstructor
+@Builder
 @Entity
 @Immutable
 @Subselect("""
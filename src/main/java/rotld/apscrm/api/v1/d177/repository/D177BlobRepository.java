@@ -0,0 +1,122 @@
+package rotld.apscrm.api.v1.d177.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import rotld.apscrm.common.PhpSerialized;
+import rotld.apscrm.common.PostSnapshot;
+import rotld.apscrm.common.StreamingJdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Varianta "raw" a subselect-ului din {@link D177}: SQL-ul întoarce blob-urile PHP ca atare, iar câmpurile
+ * derivate (firmă, CUI, email, sumă…) se decodează în Java – fără LOCATE / SUBSTRING_INDEX per rând în MySQL.
+ * Rândurile decodate stau într-un {@link PostSnapshot}: blob-urile se citesc doar pentru postările noi sau
+ * modificate, nu la fiecare pagină. Flag-urile nu se mai iau prin join – vin din PostFlagsCache.
+ */
+@Repository
+@RequiredArgsConstructor
+public class D177BlobRepository {
+
+    private static final String SQL = """
+      SELECT
+        s.ID                                          AS id,
+        DATE_FORMAT(s.post_date, '%Y-%m-%dT%H:%i:%s') AS post_date_iso,
+        s.post_title                                  AS title,
+        docfile.meta_value                            AS doc_file,
+        firma.meta_value                              AS firma,
+        reprez.meta_value                             AS reprez,
+        contract.meta_value                           AS contract
+      FROM wordpress.wp_posts s
+      LEFT JOIN wordpress.wp_postmeta d        ON d.post_id = s.ID AND d.meta_key = '_aps177_doc_id'
+      LEFT JOIN wordpress.wp_postmeta docfile  ON docfile.post_id = d.meta_value AND docfile.meta_key = '_wp_attached_file'
+      LEFT JOIN wordpress.wp_postmeta firma    ON firma.post_id    = s.ID AND firma.meta_key    = '_aps177_firma'
+      LEFT JOIN wordpress.wp_postmeta reprez   ON reprez.post_id   = s.ID AND reprez.meta_key   = '_aps177_reprez'
+      LEFT JOIN wordpress.wp_postmeta contract ON contract.post_id = s.ID AND contract.meta_key = '_aps177_contract'
+      WHERE s.post_type = 'aps_s177'
+        AND s.post_status = 'publish'
+        AND (s.ID > :afterId OR s.post_modified >= :since)
+    """;
+
+    /* exportul CSV: toate rândurile, într-un singur query citit în streaming */
+    private static final String EXPORT_SQL = SQL + "ORDER BY s.ID DESC";
+
+    private static final String SITE = "http://actiunepentrusanatate.ro";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Value("${app.php-blobs.snapshot-max-age-ms:900000}")
+    private long snapshotMaxAgeMs;
+
+    private PostSnapshot<D177> snapshot;
+    private NamedParameterJdbcTemplate streaming;
+
+    private record Row(int id, String postDateIso, String title, String docFile,
+                       Map<String, String> firma, Map<String, String> reprez, Map<String, String> contract) {}
+
+    @PostConstruct
+    void init() {
+        snapshot = new PostSnapshot<>(jdbc, "aps_s177", snapshotMaxAgeMs, this::load);
+        streaming = StreamingJdbc.of(jdbc);
+    }
+
+    /** Toate formularele 177, cu câmpurile derivate populate din blob-uri (entități detașate, read-only). */
+    public List<D177> findAllDecoded() {
+        return snapshot.rows();
+    }
+
+    /** Toate formularele 177, id descrescător, fără snapshot: pentru export. */
+    public void forEach(Consumer<D177> sink) {
+        streaming.query(EXPORT_SQL, new MapSqlParameterSource().addValue("afterId", 0).addValue("since", new Timestamp(0)),
+                (RowCallbackHandler) rs -> sink.accept(map(row(rs))));
+    }
+
+    private Map<Integer, D177> load(long afterId, Timestamp since) {
+        Map<Integer, D177> out = new HashMap<>();
+        jdbc.query(SQL, new MapSqlParameterSource().addValue("afterId", afterId).addValue("since", since),
+                (RowCallbackHandler) rs -> out.put(rs.getInt("id"), map(row(rs))));
+        return out;
+    }
+
+    private static Row row(ResultSet rs) throws SQLException {
+        return new Row(
+                rs.getInt("id"), rs.getString("post_date_iso"), rs.getString("title"), rs.getString("doc_file"),
+                PhpSerialized.parseAssoc(rs.getBytes("firma")), PhpSerialized.parseAssoc(rs.getBytes("reprez")),
+                PhpSerialized.parseAssoc(rs.getBytes("contract")));
+    }
+
+    private static D177 map(Row r) {
+        int id = r.id();
+        Map<String, String> firma    = r.firma();
+        Map<String, String> reprez   = r.reprez();
+        Map<String, String> contract = r.contract();
+        String docFile = r.docFile();
+        String amount  = contract.get("suma");
+        return D177.builder()
+                .id(id)
+                .postDateIso(r.postDateIso())
+                .title(r.title())
+                .docUrl(docFile == null ? null : SITE + "/wp-content/uploads/" + docFile)
+                .companyName(firma.get("denumire"))
+                .fiscalCode(firma.get("cui"))
+                .email(reprez.get("email"))
+                .phone(reprez.get("tel"))
+                .amountStr(amount)
+                .amountNum(PhpSerialized.unsigned(amount))
+                .contractDate(contract.get("data"))
+                .detail(SITE + "/wp-json/aps/v1/sponsorships/" + id)
+                .adminEdit(SITE + "/wp-admin/post.php?post=" + id + "&action=edit")
+                .build();
+    }
+}
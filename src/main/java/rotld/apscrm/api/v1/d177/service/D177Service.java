@@ -3,6 +3,8 @@ package rotld.apscrm.api.v1.d177.service;
 
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
@@ -10,21 +12,30 @@ import org.springframework.transaction.annotation.Transactional;
 import rotld.apscrm.api.v1.d177.dto.D177DetailsDto;
 import rotld.apscrm.api.v1.d177.dto.D177ResponseDto;
 import rotld.apscrm.api.v1.d177.repository.*;
+import rotld.apscrm.api.v1.kpi.service.KpiChangedEvent;
+import rotld.apscrm.api.v1.kpi.service.KpiSection;
+import rotld.apscrm.common.InMemoryPage;
 import rotld.apscrm.common.PhpSerialized;
+import rotld.apscrm.common.TextSearch;
 
 import java.time.Instant;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 
 @Service
 @RequiredArgsConstructor
 public class D177Service {
     private final D177Repository repo;
-    private final D177SettingsRepository settingsRepo;
+    private final PostFlagsCache flagsCache;
     private final D177DetailsRepository d177DetailsRepository;
+    private final D177BlobRepository blobRepo;
+    private final ApplicationEventPublisher events;
+
+    /** true: câmpurile derivate se decodează în Java din blob-uri (snapshot în memorie), nu cu LOCATE în subselect */
+    @Value("${app.php-blobs.decode-in-java:false}")
+    private boolean decodeInJava;
 
     // map UI -> coloane reale
     private static final Map<String, String> SORT_MAP = Map.ofEntries(
@@ -48,6 +59,26 @@ public class D177Service {
             "downloaded", "verified", "corrupt"
     );
 
+    /* aceleași chei ca ALLOWED, pentru sortarea în memorie; flag-urile vin din PostFlagsCache, nu din join */
+    private final Map<String, Comparator<D177>> sortKeys = Map.ofEntries(
+            Map.entry("id", InMemoryPage.natural(D177::getId)),
+            Map.entry("postDateIso", InMemoryPage.text(D177::getPostDateIso)),
+            Map.entry("companyName", InMemoryPage.text(D177::getCompanyName)),
+            Map.entry("fiscalCode", InMemoryPage.text(D177::getFiscalCode)),
+            Map.entry("email", InMemoryPage.text(D177::getEmail)),
+            Map.entry("phone", InMemoryPage.text(D177::getPhone)),
+            Map.entry("amountNum", InMemoryPage.natural(D177::getAmountNum)),
+            Map.entry("amountStr", InMemoryPage.text(D177::getAmountStr)),
+            Map.entry("contractDate", InMemoryPage.text(D177::getContractDate)),
+            Map.entry("downloaded", flagOrder(PostFlagsCache.DOWNLOADED)),
+            Map.entry("verified", flagOrder(PostFlagsCache.VERIFIED)),
+            Map.entry("corrupt", flagOrder(PostFlagsCache.CORRUPT))
+    );
+
+    private Comparator<D177> flagOrder(int flag) {
+        return Comparator.comparingInt(r -> flagsCache.bit(r.getId(), flag));
+    }
+
     /**
      * Re-map sort keys de la UI la coloanele entității @Subselect
      */
@@ -70,10 +101,18 @@ public class D177Service {
      */
     public Page<D177ResponseDto> getPage(Pageable pageable) {
         Pageable p = remapSort(pageable);
-        Page<D177> page = repo.findAll(p);
+        Page<D177> page = decodeInJava
+                ? InMemoryPage.of(blobRepo.findAllDecoded(), r -> true, p, sortKeys)
+                : repo.findAll(p);
 
-        Map<Integer, D177Settings> flags = fetchFlags(page.getContent());
-        return page.map(r -> toDto(r, flags.get(r.getId())));
+        return page.map(this::toDto);
+    }
+
+    /**
+     * Toate formularele pentru export, id descrescător, dintr-un singur query citit în streaming.
+     */
+    public void exportAll(Consumer<D177ResponseDto> sink) {
+        blobRepo.forEach(r -> sink.accept(toDto(r)));
     }
 
     /**
@@ -81,18 +120,10 @@ public class D177Service {
      */
     public Page<D177ResponseDto> search(Pageable pageable, String q) {
         Pageable p = remapSort(pageable);
-        Specification<D177> spec = buildSpec(q);
-
-        Page<D177> page = repo.findAll(spec, p);
-        Map<Integer, D177Settings> flags = fetchFlags(page.getContent());
-        return page.map(r -> toDto(r, flags.get(r.getId())));
-    }
-
-    private Map<Integer, D177Settings> fetchFlags(List<D177> rows) {
-        if (rows.isEmpty()) return Collections.emptyMap();
-        List<Integer> ids = rows.stream().map(D177::getId).toList();
-        return settingsRepo.findByPostIdIn(ids).stream()
-                .collect(Collectors.toMap(D177Settings::getPostId, ps -> ps));
+        Page<D177> page = decodeInJava
+                ? InMemoryPage.of(blobRepo.findAllDecoded(), matcher(q), p, sortKeys)
+                : repo.findAll(buildSpec(q), p);
+        return page.map(this::toDto);
     }
 
     private Specification<D177> buildSpec(String q) {
@@ -121,6 +152,11 @@ public class D177Service {
         };
     }
 
+    /** Echivalentul în Java al {@link #buildSpec(String)}. */
+    private static java.util.function.Predicate<D177> matcher(String q) {
+        return TextSearch.matcher(q, D177::getId, List.<Function<D177, String>>of(D177::getCompanyName, D177::getFiscalCode, D177::getEmail));
+    }
+
     private static String firstNonEmpty(String... vals) {
         for (String v : vals) {
             if (v != null && !v.isBlank()) return v.trim();
@@ -128,7 +164,7 @@ public class D177Service {
         return "";
     }
 
-    private D177ResponseDto toDto(D177 r, D177Settings ps) {
+    private D177ResponseDto toDto(D177 r) {
         return D177ResponseDto.builder()
                 .id(r.getId())
                 .date(r.getPostDateIso())
@@ -141,15 +177,15 @@ public class D177Service {
                 .docUrl(r.getDocUrl())
                 .detail(firstNonEmpty(r.getDetail(), r.getAdminEdit()))
                 .adminEdit(r.getAdminEdit())
-                .downloaded(Boolean.TRUE.equals((ps != null ? ps.getDownloaded() : r.getDownloaded())))
-                .verified(Boolean.TRUE.equals((ps != null ? ps.getVerified() : r.getVerified())))
-                .corrupt(Boolean.TRUE.equals((ps != null ? ps.getCorrupt() : r.getCorrupt())))
+                .downloaded(flagsCache.has(r.getId(), PostFlagsCache.DOWNLOADED, r.getDownloaded()))
+                .verified(flagsCache.has(r.getId(), PostFlagsCache.VERIFIED, r.getVerified()))
+                .corrupt(flagsCache.has(r.getId(), PostFlagsCache.CORRUPT, r.getCorrupt()))
                 .build();
     }
 
     @Transactional
     public void updateFlags(Integer id, Boolean downloaded, Boolean verified, Boolean corrupt) {
-        settingsRepo.upsertFlags(id, downloaded, verified, corrupt);
+        flagsCache.upsert(id, downloaded, verified, corrupt);
     }
 
     @Transactional
@@ -157,6 +193,7 @@ public class D177Service {
         repo.deleteMeta(id);
         int affected = repo.deletePost(id);
         if (affected == 0) throw new IllegalArgumentException("D177 record not found: " + id);
+        events.publishEvent(new KpiChangedEvent(KpiSection.F177));
     }
 
     public D177DetailsDto getDetails(Integer id) {
@@ -188,23 +225,11 @@ public class D177Service {
 
     /* ------------ helperi ------------ */
 
-    private static final Pattern PAIR =
-            Pattern.compile("s:\\d+:\"(.*?)\";s:\\d+:\"(.*?)\";", Pattern.DOTALL);
-
     /**
-     * Parser tolerant pentru a:... cu perechi s:"key";s:"val"; …
+     * Perechile cheie/valoare din a:... (decoder-ul cu lungimi din {@link PhpSerialized}).
      */
     static Map<String, String> parsePhpMap(String s) {
-        Map<String, String> m = new LinkedHashMap<>();
-        if (s == null || s.isBlank()) return m;
-        try {
-            Matcher it = PAIR.matcher(s);
-            while (it.find()) {
-                m.put(it.group(1), it.group(2));
-            }
-        } catch (Exception ignored) {
-        }
-        return m;
+        return PhpSerialized.parseAssoc(s);
     }
 
     private static String nz(String s) {
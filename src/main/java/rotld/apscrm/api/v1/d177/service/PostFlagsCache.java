@@ -0,0 +1,188 @@
+package rotld.apscrm.api.v1.d177.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import rotld.apscrm.api.v1.d177.repository.D177SettingsRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Toată tabela wordpress.wp_posts_settings în memorie: post_id → 3 biți (downloaded / verified / corrupt).
+ * <p>
+ * Tabela e mică și se scrie rar, deci o ținem ca două array-uri paralele sortate după post_id
+ * (căutare binară, ~5 bytes per rând). Scrierile prin {@link #upsert} se aplică și în snapshot după commit;
+ * reîncărcarea periodică prinde modificările făcute din altă parte (WordPress, altă instanță).
+ * Listele (177, sponsorizare, 230) citesc flag-urile de aici, fără query suplimentar per pagină.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PostFlagsCache {
+
+    public static final int DOWNLOADED = 1;
+    public static final int VERIFIED   = 2;
+    public static final int CORRUPT    = 4;
+
+    /** post-ul nu are rând în wp_posts_settings */
+    public static final int NONE = -1;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final D177SettingsRepository settingsRepo;
+
+    private record Snapshot(int[] ids, byte[] bits) {}
+
+    /** o modificare aplicată în snapshot: id-urile sortate și valorile (null = neschimbat) */
+    private record Write(int[] ids, Boolean downloaded, Boolean verified, Boolean corrupt) {}
+
+    private volatile Snapshot snapshot;
+    /* scrierile făcute cât rulează o reîncărcare, reaplicate peste rezultatul ei; null în rest (guarded by this) */
+    private List<Write> sinceLoad;
+
+    /** Biții post-ului sau {@link #NONE}. */
+    public int get(Integer postId) {
+        if (postId == null) return NONE;
+        Snapshot s = current();
+        int i = Arrays.binarySearch(s.ids(), postId);
+        return i < 0 ? NONE : s.bits()[i];
+    }
+
+    /** Flag-ul cerut; fără rând în tabelă → {@code fallback} (valoarea din proiecție). */
+    public boolean has(Integer postId, int flag, Boolean fallback) {
+        int bits = get(postId);
+        return bits == NONE ? Boolean.TRUE.equals(fallback) : (bits & flag) != 0;
+    }
+
+    /** Cheie de sortare: 1 dacă flag-ul e setat, altfel 0. */
+    public int bit(Integer postId, int flag) {
+        return has(postId, flag, false) ? 1 : 0;
+    }
+
+    /**
+     * Upsert în wp_posts_settings (null = neschimbat) + actualizarea snapshot-ului.
+     * Într-o tranzacție, snapshot-ul se actualizează abia după commit.
+     */
+    public void upsert(Integer postId, Boolean downloaded, Boolean verified, Boolean corrupt) {
+        settingsRepo.upsertFlags(postId, downloaded, verified, corrupt);
+        Runnable apply = () -> apply(List.of(postId), downloaded, verified, corrupt);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.flags.refresh-ms:300000}",
+               initialDelayString = "${app.flags.refresh-ms:300000}")
+    public void refresh() {
+        synchronized (this) {
+            sinceLoad = new ArrayList<>();
+        }
+        try {
+            Snapshot s = load();
+            synchronized (this) {
+                // un upsert din timpul încărcării poate lipsi din rezultat: îl reaplicăm (valorile sunt absolute)
+                for (Write w : sinceLoad) s = merge(s, w);
+                snapshot = s;
+            }
+        } catch (Exception e) {
+            log.error("Nu am putut reîncărca flag-urile din wp_posts_settings: {}", e.getMessage(), e);
+        } finally {
+            synchronized (this) {
+                sinceLoad = null;
+            }
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null) return current;
+        synchronized (this) {
+            if (snapshot == null) snapshot = load();
+            return snapshot;
+        }
+    }
+
+    /**
+     * Aplică în snapshot aceeași modificare pentru mai multe post-uri deja scrise în DB (ex: update bulk),
+     * cu o singură copie a array-urilor.
+     */
+    public void applyAll(Collection<Integer> postIds, Boolean downloaded, Boolean verified, Boolean corrupt) {
+        if (!postIds.isEmpty()) apply(postIds, downloaded, verified, corrupt);
+    }
+
+    /** copy-on-write (interclasare cu id-urile noi, sortate): cititorii văd fie snapshot-ul vechi, fie pe cel nou */
+    private synchronized void apply(Collection<Integer> postIds, Boolean downloaded, Boolean verified, Boolean corrupt) {
+        Write w = new Write(postIds.stream().mapToInt(Integer::intValue).sorted().distinct().toArray(),
+                downloaded, verified, corrupt);
+        if (sinceLoad != null) sinceLoad.add(w);
+        if (snapshot != null) snapshot = merge(snapshot, w); // altfel se încarcă complet la primul acces
+    }
+
+    private static Snapshot merge(Snapshot s, Write w) {
+        int[] changed = w.ids();
+        int n = s.ids().length;
+        int[] ids = new int[n + changed.length];
+        byte[] values = new byte[n + changed.length];
+        int i = 0, j = 0, k = 0;
+        while (i < n || j < changed.length) {
+            if (j == changed.length || (i < n && s.ids()[i] < changed[j])) {
+                ids[k] = s.ids()[i];
+                values[k++] = s.bits()[i++];
+                continue;
+            }
+            boolean existing = i < n && s.ids()[i] == changed[j];
+            int bits = existing ? s.bits()[i++] : 0;
+            bits = set(bits, DOWNLOADED, w.downloaded());
+            bits = set(bits, VERIFIED, w.verified());
+            bits = set(bits, CORRUPT, w.corrupt());
+            ids[k] = changed[j++];
+            values[k++] = (byte) bits;
+        }
+        return new Snapshot(Arrays.copyOf(ids, k), Arrays.copyOf(values, k));
+    }
+
+    private static int set(int bits, int flag, Boolean value) {
+        if (value == null) return bits;
+        return value ? bits | flag : bits & ~flag;
+    }
+
+    private Snapshot load() {
+        long start = System.currentTimeMillis();
+        int[][] ids = {new int[1024]};
+        byte[][] bits = {new byte[1024]};
+        int[] n = {0};
+        jdbc.query("""
+              SELECT post_id, is_downloaded, is_verified, is_corrupt
+              FROM wordpress.wp_posts_settings
+              ORDER BY post_id
+            """, new MapSqlParameterSource(), (RowCallbackHandler) rs -> {
+            if (n[0] == ids[0].length) {
+                ids[0] = Arrays.copyOf(ids[0], n[0] * 2);
+                bits[0] = Arrays.copyOf(bits[0], n[0] * 2);
+            }
+            int b = (rs.getBoolean("is_downloaded") ? DOWNLOADED : 0)
+                    | (rs.getBoolean("is_verified") ? VERIFIED : 0)
+                    | (rs.getBoolean("is_corrupt") ? CORRUPT : 0);
+            ids[0][n[0]] = rs.getInt("post_id");
+            bits[0][n[0]] = (byte) b;
+            n[0]++;
+        });
+        log.info("Flag-uri wp_posts_settings încărcate: {} rânduri în {} ms", n[0], System.currentTimeMillis() - start);
+        return new Snapshot(Arrays.copyOf(ids[0], n[0]), Arrays.copyOf(bits[0], n[0]));
+    }
+}
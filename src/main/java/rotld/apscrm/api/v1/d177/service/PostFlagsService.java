@@ -0,0 +1,102 @@
+package rotld.apscrm.api.v1.d177.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import rotld.apscrm.api.v1.d177.dto.FlagsBulkRequest;
+import rotld.apscrm.api.v1.d177.dto.FlagsBulkResultDto;
+
+import java.util.*;
+
+/**
+ * Update bulk de flag-uri (downloaded / verified / corrupt) pentru formulare 177 / 230 / sponsorizări.
+ * <p>
+ * Id-urile se procesează în loturi de {@code app.flags.bulk-chunk-size}: per lot un SELECT de existență
+ * și un singur INSERT … ON DUPLICATE KEY UPDATE cu toate rândurile, fiecare lot în tranzacția lui.
+ * Un lot care eșuează își marchează id-urile cu "error" și nu le oprește pe celelalte.
+ * Cache-ul de flag-uri se actualizează o singură dată, la final.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PostFlagsService {
+
+    private static final String UPSERT_SQL = """
+      INSERT INTO wordpress.wp_posts_settings (post_id, is_downloaded, is_verified, is_corrupt)
+      VALUES :rows
+      ON DUPLICATE KEY UPDATE
+        is_downloaded = IFNULL(:downloaded, is_downloaded),
+        is_verified   = IFNULL(:verified,   is_verified),
+        is_corrupt    = IFNULL(:corrupt,    is_corrupt),
+        updated_at    = CURRENT_TIMESTAMP
+    """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final PostFlagsCache flagsCache;
+
+    @Value("${app.flags.bulk-chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.flags.bulk-max-ids:5000}")
+    private int maxIds;
+
+    /** @param postType tipul de post acceptat (id-urile de alt tip apar ca "not_found") */
+    public FlagsBulkResultDto bulkUpdate(String postType, FlagsBulkRequest req) {
+        if (req == null || req.ids() == null || req.ids().isEmpty())
+            throw new IllegalArgumentException("Lista de id-uri e goală");
+        if (req.downloaded() == null && req.verified() == null && req.corrupt() == null)
+            throw new IllegalArgumentException("Niciun flag de modificat");
+        List<Integer> ids = req.ids().stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.size() > maxIds)
+            throw new IllegalArgumentException("Prea multe id-uri: " + ids.size() + " (maxim " + maxIds + ")");
+
+        long start = System.currentTimeMillis();
+        Map<Integer, String> results = new LinkedHashMap<>();
+        List<Integer> written = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            try {
+                List<Integer> found = tx.execute(status -> upsertChunk(postType, chunk, req));
+                Set<Integer> ok = new HashSet<>(found);
+                for (Integer id : chunk) results.put(id, ok.contains(id) ? "updated" : "not_found");
+                written.addAll(found);
+            } catch (Exception e) {
+                log.error("Flag-uri bulk ({}): lotul de {} id-uri a eșuat: {}", postType, chunk.size(), e.getMessage(), e);
+                for (Integer id : chunk) results.put(id, "error");
+            }
+        }
+
+        flagsCache.applyAll(written, req.downloaded(), req.verified(), req.corrupt());
+        log.info("Flag-uri bulk ({}): {}/{} id-uri actualizate în {} ms",
+                postType, written.size(), ids.size(), System.currentTimeMillis() - start);
+        return new FlagsBulkResultDto(written.size(), results);
+    }
+
+    private List<Integer> upsertChunk(String postType, List<Integer> chunk, FlagsBulkRequest req) {
+        List<Integer> found = jdbc.queryForList("""
+              SELECT ID FROM wordpress.wp_posts WHERE ID IN (:ids) AND post_type = :postType
+            """, new MapSqlParameterSource().addValue("ids", chunk).addValue("postType", postType), Integer.class);
+        if (found.isEmpty()) return found;
+
+        List<Object[]> rows = new ArrayList<>(found.size());
+        for (Integer id : found) {
+            rows.add(new Object[]{id, bit(req.downloaded()), bit(req.verified()), bit(req.corrupt())});
+        }
+        jdbc.update(UPSERT_SQL, new MapSqlParameterSource()
+                .addValue("rows", rows)
+                .addValue("downloaded", req.downloaded())
+                .addValue("verified", req.verified())
+                .addValue("corrupt", req.corrupt()));
+        return found;
+    }
+
+    /** valoarea pentru rândurile noi (IFNULL(:x, 0) din upsert-ul simplu) */
+    private static int bit(Boolean b) {
+        return Boolean.TRUE.equals(b) ? 1 : 0;
+    }
+}
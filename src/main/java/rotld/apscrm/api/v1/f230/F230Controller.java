@@ -6,8 +6,10 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import rotld.apscrm.api.v1.d177.repository.D177Settings;
-import rotld.apscrm.api.v1.d177.repository.D177SettingsRepository;
+import rotld.apscrm.api.v1.d177.dto.FlagsBulkRequest;
+import rotld.apscrm.api.v1.d177.dto.FlagsBulkResultDto;
+import rotld.apscrm.api.v1.d177.service.PostFlagsCache;
+import rotld.apscrm.api.v1.d177.service.PostFlagsService;
 import rotld.apscrm.api.v1.f230.dto.F230DetailDto;
 import rotld.apscrm.api.v1.f230.dto.F230ResponseDto;
 import rotld.apscrm.api.v1.f230.service.F230Service;
@@ -19,7 +21,8 @@ import java.util.Map;
 @RequestMapping("/api/v1/f230")
 public class F230Controller {
     private final F230Service service;
-    private final D177SettingsRepository settingsRepo;
+    private final PostFlagsCache flagsCache;
+    private final PostFlagsService flagsService;
 
     @GetMapping
     public Page<F230ResponseDto> list(Pageable pageable){ return service.list(pageable); }
@@ -29,13 +32,19 @@ public class F230Controller {
         return service.search(pageable, q);
     }
 
+    /** Aceleași flag-uri pe o listă de id-uri; rezultat per id. */
+    @PutMapping("/flags")
+    public FlagsBulkResultDto bulkFlags(@RequestBody FlagsBulkRequest body){
+        return flagsService.bulkUpdate("formular230", body);
+    }
+
     @PutMapping("/{id}/flags")
     @Transactional
     public ResponseEntity<Void> upsertFlags(@PathVariable Integer id, @RequestBody Map<String, Boolean> body){
         Boolean downloaded = body.containsKey("downloaded") ? (Boolean) body.get("downloaded") : null;
         Boolean verified   = body.containsKey("verified")   ? (Boolean) body.get("verified")   : null;
         Boolean corrupt    = body.containsKey("corrupt")    ? (Boolean) body.get("corrupt")    : null;
-        settingsRepo.upsertFlags(id, downloaded, verified, corrupt);
+        flagsCache.upsert(id, downloaded, verified, corrupt);
         return ResponseEntity.noContent().build();
     }
 
@@ -0,0 +1,61 @@
+package rotld.apscrm.api.v1.f230.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Citiri pe loturi de id-uri pentru borderoul 230: doar meta-urile de care are nevoie XML-ul,
+ * într-un query pivot per lot, în loc de subselect-ul EAV complet din {@link F230}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class F230BorderouRepository {
+
+    private static final String ROWS_SQL = """
+      SELECT
+        s.ID AS id,
+        MAX(CASE WHEN m.meta_key = 'cnp'              THEN m.meta_value END) AS cnp,
+        MAX(CASE WHEN m.meta_key = 'nume'             THEN m.meta_value END) AS first_name,
+        MAX(CASE WHEN m.meta_key = 'prenume'          THEN m.meta_value END) AS last_name,
+        MAX(CASE WHEN m.meta_key = 'iban'             THEN m.meta_value END) AS iban,
+        MAX(CASE WHEN m.meta_key = 'acordComunicare'  THEN m.meta_value END) AS acord_email,
+        MAX(CASE WHEN m.meta_key = 'distribuire2ani'  THEN m.meta_value END) AS distrib2
+      FROM wordpress.wp_posts s
+      LEFT JOIN wordpress.wp_postmeta m
+             ON m.post_id = s.ID
+            AND m.meta_key IN ('cnp','nume','prenume','iban','acordComunicare','distribuire2ani')
+      WHERE s.ID IN (:ids) AND s.post_type = 'formular230' AND s.post_status = 'publish'
+      GROUP BY s.ID
+    """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /** Câmpurile unei declarații 230 din borderou. */
+    public record Row(Integer id, String cnp, String firstName, String lastName,
+                      String iban, String acordEmail, String distrib2) {}
+
+    /** Id-urile din lot care sunt formulare 230 publicate (aceeași condiție ca {@link F230}). */
+    public List<Integer> existingIds(Collection<Integer> ids) {
+        return jdbc.queryForList("""
+              SELECT s.ID FROM wordpress.wp_posts s
+              WHERE s.ID IN (:ids) AND s.post_type = 'formular230' AND s.post_status = 'publish'
+            """, new MapSqlParameterSource("ids", ids), Integer.class);
+    }
+
+    /** Rândurile pentru un lot de id-uri (ordine nespecificată). */
+    public List<Row> findRows(Collection<Integer> ids) {
+        return jdbc.query(ROWS_SQL, new MapSqlParameterSource("ids", ids), (rs, i) -> new Row(
+                rs.getInt("id"),
+                rs.getString("cnp"),
+                rs.getString("first_name"),
+                rs.getString("last_name"),
+                rs.getString("iban"),
+                rs.getString("acord_email"),
+                rs.getString("distrib2")));
+    }
+}
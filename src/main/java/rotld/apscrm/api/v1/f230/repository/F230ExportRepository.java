@@ -0,0 +1,95 @@
+package rotld.apscrm.api.v1.f230.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import rotld.apscrm.common.StreamingJdbc;
+
+import java.util.function.Consumer;
+
+/**
+ * Exportul CSV al formularelor 230: același SQL ca subselect-ul din {@link F230}, rulat o singură dată și citit
+ * în streaming ({@link StreamingJdbc}), în loc de câte un query keyset per lot peste tabela derivată.
+ */
+@Repository
+@RequiredArgsConstructor
+public class F230ExportRepository {
+
+    private static final String SQL = """
+      SELECT
+        s.ID                                          AS id,
+        DATE_FORMAT(s.post_date, '%Y-%m-%dT%H:%i:%s') AS post_date_iso,
+        s.post_title                                  AS title,
+        anul.meta_value                               AS year,
+        nume.meta_value                               AS first_name,
+        prenume.meta_value                            AS last_name,
+        email.meta_value                              AS email,
+        telefon.meta_value                            AS phone,
+        iban.meta_value                               AS iban,
+        dist2.meta_value                              AS distrib2,
+        acord.meta_value                              AS acord_email,
+        pdf_url.meta_value                            AS pdf_url,
+        s.nr_borderou                                 AS nr_borderou,
+        cnp.meta_value                                AS cnp,
+        COALESCE(ps.is_downloaded, 0)                 AS downloaded,
+        COALESCE(ps.is_verified,   0)                 AS verified,
+        COALESCE(ps.is_corrupt,    0)                 AS corrupt
+      FROM wordpress.wp_posts s
+      LEFT JOIN wordpress.wp_postmeta anul     ON anul.post_id    = s.ID AND anul.meta_key     = 'anul'
+      LEFT JOIN wordpress.wp_postmeta nume     ON nume.post_id    = s.ID AND nume.meta_key     = 'nume'
+      LEFT JOIN wordpress.wp_postmeta prenume  ON prenume.post_id = s.ID AND prenume.meta_key  = 'prenume'
+      LEFT JOIN wordpress.wp_postmeta email    ON email.post_id   = s.ID AND email.meta_key    = 'email'
+      LEFT JOIN wordpress.wp_postmeta telefon  ON telefon.post_id = s.ID AND telefon.meta_key  = 'telefon'
+      LEFT JOIN wordpress.wp_postmeta iban     ON iban.post_id    = s.ID AND iban.meta_key     = 'iban'
+      LEFT JOIN wordpress.wp_postmeta dist2    ON dist2.post_id   = s.ID AND dist2.meta_key    = 'distribuire2ani'
+      LEFT JOIN wordpress.wp_postmeta acord    ON acord.post_id   = s.ID AND acord.meta_key    = 'acordComunicare'
+      LEFT JOIN wordpress.wp_postmeta pdf_url  ON pdf_url.post_id = s.ID AND pdf_url.meta_key  = '_pdf_url'
+      LEFT JOIN wordpress.wp_postmeta cnp      ON cnp.post_id     = s.ID AND cnp.meta_key      = 'cnp'
+      LEFT JOIN wordpress.wp_posts_settings ps ON ps.post_id = s.ID
+      WHERE s.post_type = 'formular230' AND s.post_status = 'publish'
+      ORDER BY s.ID DESC
+    """;
+
+    private static final String SITE = "http://actiunepentrusanatate.ro";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    private NamedParameterJdbcTemplate streaming;
+
+    @PostConstruct
+    void init() {
+        streaming = StreamingJdbc.of(jdbc);
+    }
+
+    /** Toate formularele 230 publicate, id descrescător (entități detașate, read-only). */
+    public void forEach(Consumer<F230> sink) {
+        streaming.query(SQL, new MapSqlParameterSource(), (RowCallbackHandler) rs -> {
+            int id = rs.getInt("id");
+            long nrBorderou = rs.getLong("nr_borderou");
+            boolean noBorderou = rs.wasNull();
+            sink.accept(F230.builder()
+                    .id(id)
+                    .postDateIso(rs.getString("post_date_iso"))
+                    .title(rs.getString("title"))
+                    .year(rs.getString("year"))
+                    .firstName(rs.getString("first_name"))
+                    .lastName(rs.getString("last_name"))
+                    .email(rs.getString("email"))
+                    .phone(rs.getString("phone"))
+                    .iban(rs.getString("iban"))
+                    .distrib2(rs.getString("distrib2"))
+                    .acordEmail(rs.getString("acord_email"))
+                    .pdfUrl(rs.getString("pdf_url"))
+                    .nrBorderou(noBorderou ? null : nrBorderou)
+                    .cnp(rs.getString("cnp"))
+                    .adminEdit(SITE + "/wp-admin/post.php?post=" + id + "&action=edit")
+                    .downloaded(rs.getBoolean("downloaded"))
+                    .verified(rs.getBoolean("verified"))
+                    .corrupt(rs.getBoolean("corrupt"))
+                    .build());
+        });
+    }
+}
@@ -0,0 +1,181 @@
+package rotld.apscrm.api.v1.f230.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Index în memorie pentru email-urile 230: zi de naștere (lună-zi din CNP) → id-uri de formular și
+ * an de reînnoire ({@code anul} + 1 sau 2 ani, după {@code distribuire2ani}) → id-uri.
+ * <p>
+ * Se încarcă dintr-un query cu doar cele 3 meta-uri necesare, nu din subselect-ul complet al lui F230. Apoi e
+ * ținut la zi incremental: formularele noi din WordPress au id mai mare, deci la fiecare refresh citim doar
+ * {@code ID > max(id)} indexat; dacă numărul de formulare nu se potrivește (ștergeri) reîncărcăm tot.
+ * Editările meta-urilor în wp-admin sunt prinse de reconstruirea zilnică, înaintea job-urilor de email.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class F230MailIndex {
+
+    /* aceeași semnătură ieftină ca la indexul de voluntari */
+    private static final String VERSION_SQL = """
+      SELECT COUNT(*) AS n, COALESCE(MAX(s.ID), 0) AS max_id
+      FROM wordpress.wp_posts s
+      WHERE s.post_type = 'formular230' AND s.post_status = 'publish'
+    """;
+
+    private static final String KEYS_SQL = """
+      SELECT s.ID AS id, cnp.meta_value AS cnp, anul.meta_value AS year, dist2.meta_value AS distrib2
+      FROM wordpress.wp_posts s
+      LEFT JOIN wordpress.wp_postmeta cnp   ON cnp.post_id   = s.ID AND cnp.meta_key   = 'cnp'
+      LEFT JOIN wordpress.wp_postmeta anul  ON anul.post_id  = s.ID AND anul.meta_key  = 'anul'
+      LEFT JOIN wordpress.wp_postmeta dist2 ON dist2.post_id = s.ID AND dist2.meta_key = 'distribuire2ani'
+      WHERE s.post_type = 'formular230' AND s.post_status = 'publish' AND s.ID > :afterId
+      ORDER BY s.ID
+    """;
+
+    private static final int NONE = -1;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    private record Keys(int birthday, int renewalYear) {}
+
+    private record Version(long count, long maxId) {}
+
+    private final Map<Integer, Keys> byId = new HashMap<>();
+    private final Map<Integer, Set<Integer>> byBirthday = new HashMap<>();
+    private final Map<Integer, Set<Integer>> byRenewalYear = new HashMap<>();
+    private long maxId;
+    private boolean loaded;
+
+    /** Formularele cu ziua de naștere (din CNP) în ziua dată. */
+    public synchronized List<Integer> birthdays(LocalDate day) {
+        ensureLoaded();
+        return List.copyOf(byBirthday.getOrDefault(monthDay(day.getMonthValue(), day.getDayOfMonth()), Set.of()));
+    }
+
+    /** Formularele care expiră (și trebuie reînnoite) în anul dat. */
+    public synchronized List<Integer> renewals(int year) {
+        ensureLoaded();
+        return List.copyOf(byRenewalYear.getOrDefault(year, Set.of()));
+    }
+
+    /** Adaugă formularele noi din WordPress; reîncarcă tot dacă între timp s-au și șters formulare. */
+    @Scheduled(fixedDelayString = "${app.f230.mail-index-refresh-ms:300000}",
+               initialDelayString = "${app.f230.mail-index-refresh-ms:300000}")
+    public synchronized void refresh() {
+        try {
+            if (!loaded) {
+                rebuild();
+                return;
+            }
+            Version v = version();
+            if (v.count() == byId.size() && v.maxId() == maxId) return;
+            int added = load(maxId);
+            if (byId.size() != v.count()) {
+                rebuild();
+            } else if (added > 0) {
+                log.info("Index email 230: {} formulare noi", added);
+            }
+        } catch (Exception e) {
+            log.error("Nu am putut actualiza indexul de email 230: {}", e.getMessage(), e);
+        }
+    }
+
+    /** Reconstruire completă: prinde și CNP-urile / anii editați în wp-admin. */
+    @Scheduled(cron = "${app.f230.mail-index-rebuild-cron:0 30 9 * * *}")
+    public synchronized void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Nu am putut reconstrui indexul de email 230: {}", e.getMessage(), e);
+        }
+    }
+
+    public synchronized void evict(Integer id) {
+        Keys k = byId.remove(id);
+        if (k != null) unindex(id, k);
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) rebuild();
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        byId.clear();
+        byBirthday.clear();
+        byRenewalYear.clear();
+        maxId = 0;
+        load(0);
+        loaded = true;
+        log.info("Index email 230 încărcat: {} formulare în {} ms", byId.size(), System.currentTimeMillis() - start);
+    }
+
+    private int load(long afterId) {
+        int[] n = {0};
+        jdbc.query(KEYS_SQL, new MapSqlParameterSource("afterId", afterId), (RowCallbackHandler) rs -> {
+            int id = rs.getInt("id");
+            Keys k = new Keys(birthday(rs.getString("cnp")), renewalYear(rs.getString("year"), rs.getString("distrib2")));
+            Keys old = byId.put(id, k);
+            if (old != null) unindex(id, old);
+            if (k.birthday() != NONE) byBirthday.computeIfAbsent(k.birthday(), x -> new HashSet<>()).add(id);
+            if (k.renewalYear() != NONE) byRenewalYear.computeIfAbsent(k.renewalYear(), x -> new HashSet<>()).add(id);
+            maxId = Math.max(maxId, id);
+            n[0]++;
+        });
+        return n[0];
+    }
+
+    private void unindex(Integer id, Keys k) {
+        remove(byBirthday, k.birthday(), id);
+        remove(byRenewalYear, k.renewalYear(), id);
+    }
+
+    private static void remove(Map<Integer, Set<Integer>> index, int key, Integer id) {
+        Set<Integer> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) index.remove(key);
+    }
+
+    private Version version() {
+        return jdbc.queryForObject(VERSION_SQL, new MapSqlParameterSource(),
+                (rs, i) -> new Version(rs.getLong("n"), rs.getLong("max_id")));
+    }
+
+    /** luna și ziua din CNP (cifrele 4-7: LLZZ), ca la job-ul vechi; NONE dacă lipsesc / nu sunt cifre */
+    static int birthday(String cnp) {
+        if (cnp == null) return NONE;
+        cnp = cnp.trim();
+        if (cnp.length() < 7) return NONE;
+        try {
+            int month = Integer.parseInt(cnp.substring(3, 5));
+            int day = Integer.parseInt(cnp.substring(5, 7));
+            if (month < 1 || month > 12 || day < 1 || day > 31) return NONE;
+            return monthDay(month, day);
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    /** anul completării + durata redirecționării (2 ani dacă distribuire2ani = 1) */
+    static int renewalYear(String year, String distrib2) {
+        if (year == null) return NONE;
+        try {
+            return Integer.parseInt(year.trim()) + ("1".equals(distrib2) ? 2 : 1);
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    private static int monthDay(int month, int day) {
+        return month * 100 + day;
+    }
+}
@@ -3,26 +3,34 @@ package rotld.apscrm.api.v1.f230.service;
 
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import rotld.apscrm.api.v1.d177.repository.D177Settings;
-import rotld.apscrm.api.v1.d177.repository.D177SettingsRepository;
+import rotld.apscrm.api.v1.kpi.service.KpiChangedEvent;
+import rotld.apscrm.api.v1.kpi.service.KpiSection;
+import rotld.apscrm.api.v1.d177.service.PostFlagsCache;
 import rotld.apscrm.api.v1.f230.dto.F230DetailDto;
 import rotld.apscrm.api.v1.f230.dto.F230ResponseDto;
 import rotld.apscrm.api.v1.f230.repository.F230;
 import rotld.apscrm.api.v1.f230.repository.F230DetailRow;
+import rotld.apscrm.api.v1.f230.repository.F230ExportRepository;
 import rotld.apscrm.api.v1.f230.repository.F230Repository;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 public class F230Service {
     private final F230Repository repo;
-    private final D177SettingsRepository settingsRepo;
+    private final F230ExportRepository exportRepo;
+    private final PostFlagsCache flagsCache;
+    private final ApplicationEventPublisher events;
+    private final F230MailIndex mailIndex;
+
+    private static final int LOAD_BATCH = 1000;
 
     private static final Map<String, String> SORT_MAP = Map.ofEntries(
             Map.entry("id", "id"),
@@ -58,16 +66,19 @@ public class F230Service {
     public Page<F230ResponseDto> list(Pageable pageable) {
         Pageable p = remap(pageable);
         Page<F230> page = repo.findAll(p);
-        Map<Integer, D177Settings> flags = fetchFlags(page.getContent());
-        return page.map(r -> toDto(r, flags.get(r.getId())));
+        return page.map(this::toDto);
+    }
+
+    /** Toate formularele pentru export, id descrescător, dintr-un singur query citit în streaming. */
+    public void exportAll(Consumer<F230ResponseDto> sink) {
+        exportRepo.forEach(r -> sink.accept(toDto(r)));
     }
 
     public Page<F230ResponseDto> search(Pageable pageable, String q) {
         Pageable p = remap(pageable);
         Specification<F230> spec = buildSpec(q);
         Page<F230> page = repo.findAll(spec, p);
-        Map<Integer, D177Settings> flags = fetchFlags(page.getContent());
-        return page.map(r -> toDto(r, flags.get(r.getId())));
+        return page.map(this::toDto);
     }
 
     private Specification<F230> buildSpec(String q) {
@@ -91,18 +102,11 @@ public class F230Service {
         };
     }
 
-    private Map<Integer, D177Settings> fetchFlags(List<F230> rows) {
-        if (rows.isEmpty()) return Map.of();
-        List<Integer> ids = rows.stream().map(F230::getId).toList();
-        return settingsRepo.findByPostIdIn(ids).stream()
-                .collect(Collectors.toMap(D177Settings::getPostId, x -> x));
-    }
-
     private static String nz(String s) {
         return s == null ? "" : s.trim();
     }
 
-    private F230ResponseDto toDto(F230 r, D177Settings ps) {
+    private F230ResponseDto toDto(F230 r) {
         boolean twoYears = "1".equals(nz(r.getDistrib2()));
         boolean acord = "1".equals(nz(r.getAcordEmail()));
         return F230ResponseDto.builder()
@@ -114,9 +118,9 @@ public class F230Service {
                 .beneficiary((nz(r.getFirstName()) + " " + nz(r.getLastName())).trim())
                 .emailContrib(nz(r.getEmail()))
                 .nrBorderou("") // gol
-                .downloaded(Boolean.TRUE.equals(ps != null ? ps.getDownloaded() : r.getDownloaded()))
-                .verified(Boolean.TRUE.equals(ps != null ? ps.getVerified() : r.getVerified()))
-                .corrupt(Boolean.TRUE.equals(ps != null ? ps.getCorrupt() : r.getCorrupt()))
+                .downloaded(flagsCache.has(r.getId(), PostFlagsCache.DOWNLOADED, r.getDownloaded()))
+                .verified(flagsCache.has(r.getId(), PostFlagsCache.VERIFIED, r.getVerified()))
+                .corrupt(flagsCache.has(r.getId(), PostFlagsCache.CORRUPT, r.getCorrupt()))
                 .acordDate(acord ? "Da" : "Nu")
                 .pdfUrl(nz(r.getPdfUrl()))
                 .detail(nz(r.getAdminEdit()))
@@ -124,8 +128,14 @@ public class F230Service {
                 .build();
     }
 
-    public List<F230> getAll() {
-        return repo.findAll(Pageable.ofSize(9999)).getContent();
+    /** Formularele cu id-urile date (ex: din {@link F230MailIndex}), în loturi de IN (...). */
+    public List<F230> findByIds(Collection<Integer> ids) {
+        List<Integer> list = List.copyOf(ids);
+        List<F230> out = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i += LOAD_BATCH) {
+            out.addAll(repo.findAllById(list.subList(i, Math.min(list.size(), i + LOAD_BATCH))));
+        }
+        return out;
     }
 
     @Transactional
@@ -133,6 +143,8 @@ public class F230Service {
         repo.deleteMeta(id);
         int affected = repo.deletePost(id);
         if (affected == 0) throw new IllegalArgumentException("F230 record not found: " + id);
+        mailIndex.evict(id);
+        events.publishEvent(new KpiChangedEvent(KpiSection.F230));
     }
 
     public F230DetailDto detail(Integer id){
@@ -3,14 +3,18 @@ package rotld.apscrm.api.v1.iban_beneficiari.service;
 
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import rotld.apscrm.api.v1.kpi.service.KpiChangedEvent;
+import rotld.apscrm.api.v1.kpi.service.KpiSection;
 import rotld.apscrm.api.v1.iban_beneficiari.dto.IbanBeneficiariResponseDto;
 import rotld.apscrm.api.v1.iban_beneficiari.repository.IbanBeneficiari;
 import rotld.apscrm.api.v1.iban_beneficiari.repository.IbanBeneficiariViewRepository;
 import rotld.apscrm.api.v1.iban_beneficiari.repository.IbanBeneficiariWriteRepository;
+import rotld.apscrm.common.Keyset;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -20,6 +24,7 @@ import java.util.List;
 public class IbanBeneficiariService {
     private final IbanBeneficiariViewRepository viewRepo;
     private final IbanBeneficiariWriteRepository writeRepo;
+    private final ApplicationEventPublisher events;
 
     private Pageable remap(Pageable pageable){
         Sort sort = pageable.getSort();
@@ -45,6 +50,13 @@ public class IbanBeneficiariService {
                 .id(v.getId()).name(v.getName()).iban(v.getIban()).addedAt(v.getPostDateIso()).hidden(v.getHidden()).build());
     }
 
+    /** Lot pentru export: rândurile cu id < beforeId (keyset, id descrescător). */
+    public List<IbanBeneficiariResponseDto> exportBatch(Integer beforeId, int size){
+        return Keyset.batch(viewRepo, beforeId, size).stream().map(v -> IbanBeneficiariResponseDto.builder()
+                .id(v.getId()).name(v.getName()).iban(v.getIban()).addedAt(v.getPostDateIso()).hidden(v.getHidden()).build())
+                .toList();
+    }
+
     public Page<IbanBeneficiariResponseDto> search(Pageable pageable, String q){
         Specification<IbanBeneficiari> spec = (root, query, cb) -> {
             if (q == null || q.isBlank()) return cb.conjunction();
@@ -75,6 +87,7 @@ public class IbanBeneficiariService {
         writeRepo.deleteMeta(postId);
         int affected = writeRepo.deletePost(postId);
         if (affected == 0) throw new IllegalArgumentException("Iban beneficiar  not found: " + postId);
+        events.publishEvent(new KpiChangedEvent(KpiSection.IBAN));
     }
 
     @Transactional
@@ -92,6 +105,7 @@ public class IbanBeneficiariService {
         }
         // setează hide = false implicit
         writeRepo.insertMeta(newId, "hide", "0");
+        events.publishEvent(new KpiChangedEvent(KpiSection.IBAN));
 
         // returnăm DTO
         return IbanBeneficiariResponseDto.builder()
@@ -124,5 +138,6 @@ public class IbanBeneficiariService {
     public void toggleHide(Integer postId, Boolean hide) {
         String value = (hide != null && hide) ? "1" : "0";
         upsertMeta(postId, "hide", value);
+        events.publishEvent(new KpiChangedEvent(KpiSection.IBAN));
     }
 }
\ No newline at end of file
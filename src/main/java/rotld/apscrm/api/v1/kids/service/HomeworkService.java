@@ -130,7 +130,8 @@ public class HomeworkService {
             String specialistUserId = profile.getUser().getId();
             String title = "Temă completată";
             String body = profile.getName() + " a marcat o temă ca fiind completă.";
-            pushNotificationService.sendToUser(
+            pushNotificationService.queueToUser(
+                    "homework_completed:" + homework.getId(),
                     specialistUserId,
                     title,
                     body,
@@ -1,26 +1,50 @@
 package rotld.apscrm.api.v1.kpi;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
-import rotld.apscrm.api.v1.kpi.dto.KpiResponseDto;
-import rotld.apscrm.api.v1.kpi.service.KpiService;
-
-import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
+import rotld.apscrm.api.v1.kpi.dto.KpiHistoryPointDto;
 import rotld.apscrm.api.v1.kpi.dto.KpiResponseDto;
+import rotld.apscrm.api.v1.kpi.service.KpiHistoryService;
+import rotld.apscrm.api.v1.kpi.service.KpiSnapshotService;
+
+import java.time.LocalDate;
+import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/v1/kpi")
 public class KpiController {
 
-    private final KpiService service;
+    private final KpiSnapshotService service;
+    private final KpiHistoryService historyService;
 
     @GetMapping
     public KpiResponseDto get() {
-        return service.getAll();
+        return service.get();
+    }
+
+    /** Recalculează acum secțiunile expirate (restul rămân din snapshot). */
+    @PostMapping("/refresh")
+    public KpiResponseDto refresh() {
+        return service.forceRefresh();
+    }
+
+    /**
+     * Serie istorică pentru grafice (din crm.kpi_daily).
+     * ex: /api/v1/kpi/history?metric=f177_amount&from=2022-01-01&to=2025-12-31&bucket=month
+     */
+    @GetMapping("/history")
+    public List<KpiHistoryPointDto> history(@RequestParam String metric,
+                                            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                            @RequestParam(defaultValue = "day") String bucket) {
+        return historyService.history(metric, from, to == null ? LocalDate.now() : to, bucket);
+    }
+
+    /** Reconstruiește istoricul FLOW pe toată perioada. */
+    @PostMapping("/history/rebuild")
+    public void rebuildHistory() {
+        historyService.rebuild();
     }
-}
\ No newline at end of file
+}
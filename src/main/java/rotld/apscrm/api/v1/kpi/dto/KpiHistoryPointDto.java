@@ -0,0 +1,12 @@
+package rotld.apscrm.api.v1.kpi.dto;
+
+import lombok.Builder;
+
+import java.math.BigDecimal;
+
+/**
+ * @param period începutul perioadei (zi / luni din săptămână / 1 a lunii), ISO
+ * @param value  suma pe perioadă (FLOW) sau ultima valoare din perioadă (GAUGE)
+ */
+@Builder
+public record KpiHistoryPointDto(String period, BigDecimal value) {}
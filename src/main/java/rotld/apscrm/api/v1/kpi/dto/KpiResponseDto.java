@@ -4,6 +4,9 @@ import lombok.*;
 
 import lombok.*;
 
+import java.util.List;
+import java.util.Map;
+
 @Getter @Setter @Builder @AllArgsConstructor @NoArgsConstructor
 public class KpiResponseDto {
     private Volunteers volunteers;
@@ -14,6 +17,12 @@ public class KpiResponseDto {
     private Causes causes;
     private Persoane persoane;
 
+    /** secțiune → momentul calculului (ISO), din snapshot */
+    private Map<String, String> computedAt;
+
+    /** secțiuni care n-au putut fi recalculate (eroare / timeout): valoarea e cea veche sau null */
+    private List<String> stale;
+
     @Getter @Setter @Builder @AllArgsConstructor @NoArgsConstructor
     public static class Volunteers {
         private Long total;
@@ -0,0 +1,4 @@
+package rotld.apscrm.api.v1.kpi.service;
+
+/** Publicat de serviciile care modifică date din KPI; secțiunea e marcată ca expirată în snapshot. */
+public record KpiChangedEvent(KpiSection section) {}
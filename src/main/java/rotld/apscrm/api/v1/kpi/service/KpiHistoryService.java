@@ -0,0 +1,175 @@
+package rotld.apscrm.api.v1.kpi.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import rotld.apscrm.api.v1.kpi.dto.KpiHistoryPointDto;
+import rotld.apscrm.api.v1.kpi.dto.KpiResponseDto;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Istoric zilnic KPI în crm.kpi_daily (metric, day, value).
+ * <p>
+ * Job-ul de noapte recalculează metricile FLOW pentru ultimele {@code app.kpi.history-recompute-days} zile
+ * (WordPress poate primi înregistrări cu dată în trecut) și adaugă valorile GAUGE pentru ziua precedentă,
+ * luate din snapshot-ul KPI. Dacă tabela e goală, FLOW-urile se reconstruiesc pe tot istoricul.
+ * Graficele citesc doar din tabela asta, cu roll-up pe zi / săptămână / lună.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KpiHistoryService {
+
+    private static final LocalDate BEGINNING = LocalDate.of(2000, 1, 1);
+
+    /* sume + număr de contracte pe zi (data din contract), pentru 177 / sponsorizare */
+    private static final String CONTRACT_DAILY_SQL = """
+      SELECT x.d AS day, COUNT(*) AS n, COALESCE(SUM(x.amount), 0) AS amount
+      FROM (
+        SELECT STR_TO_DATE(""" + KpiService.CONTRACT_DATA + """
+               , '%Y-%m-%d') AS d,
+               CAST(""" + KpiService.CONTRACT_SUMA + """
+               AS UNSIGNED) AS amount
+        FROM wordpress.wp_posts s
+        JOIN wordpress.wp_postmeta contract
+          ON contract.post_id = s.ID AND contract.meta_key = :metaKey
+        WHERE s.post_type = :postType AND s.post_status = 'publish'
+      ) x
+      WHERE x.d >= :from
+      GROUP BY x.d
+    """;
+
+    /* postări noi pe zi (formulare 230, voluntari) */
+    private static final String POSTS_DAILY_SQL = """
+      SELECT DATE(s.post_date) AS day, COUNT(*) AS n, 0 AS amount
+      FROM wordpress.wp_posts s
+      WHERE s.post_type = :postType AND s.post_status = 'publish' AND s.post_date >= :from
+      GROUP BY DATE(s.post_date)
+    """;
+
+    private static final String UPSERT_SQL = """
+      INSERT INTO crm.kpi_daily (metric, day, value) VALUES (:metric, :day, :value)
+      ON DUPLICATE KEY UPDATE value = VALUES(value)
+    """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final KpiSnapshotService snapshotService;
+    private final TransactionTemplate tx;
+
+    @Value("${app.kpi.history-recompute-days:7}")
+    private int recomputeDays;
+
+    @Scheduled(cron = "${app.kpi.history-cron:0 15 0 * * *}")
+    public void capture() {
+        try {
+            boolean empty = !Boolean.TRUE.equals(jdbc.queryForObject(
+                    "SELECT EXISTS(SELECT 1 FROM crm.kpi_daily)", new MapSqlParameterSource(), Boolean.class));
+            record(empty ? BEGINNING : LocalDate.now().minusDays(recomputeDays));
+        } catch (Exception e) {
+            log.error("Istoric KPI: captura zilnică a eșuat: {}", e.getMessage(), e);
+        }
+    }
+
+    /** Reconstruiește FLOW-urile pe tot istoricul (ex: după import de date vechi în WordPress). */
+    public void rebuild() {
+        record(BEGINNING);
+    }
+
+    public void record(LocalDate from) {
+        long start = System.currentTimeMillis();
+        List<SqlParameterSource> rows = new ArrayList<>();
+
+        flows(CONTRACT_DAILY_SQL, "aps_s177", "_aps177_contract", from, KpiMetric.F177_COUNT, KpiMetric.F177_AMOUNT, rows);
+        flows(CONTRACT_DAILY_SQL, "aps_sponsorship", "_aps_contract", from, KpiMetric.SPONSORSHIP_COUNT, KpiMetric.SPONSORSHIP_AMOUNT, rows);
+        flows(POSTS_DAILY_SQL, "formular230", null, from, KpiMetric.F230_SUBMISSIONS, null, rows);
+        flows(POSTS_DAILY_SQL, "aps_volunteer", null, from, KpiMetric.VOLUNTEERS_NEW, null, rows);
+
+        // gauge-urile: starea de la sfârșitul zilei precedente
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        KpiResponseDto kpi = snapshotService.forceRefresh();
+        if (kpi.getVolunteers() != null)
+            gauge(KpiMetric.VOLUNTEERS_TOTAL, yesterday, kpi.getVolunteers().getTotal(), rows);
+        if (kpi.getCauses() != null) {
+            gauge(KpiMetric.CAUSES_REACHED, yesterday, kpi.getCauses().getReachedGoal(), rows);
+            gauge(KpiMetric.CAUSES_PROGRESS_PCT, yesterday, kpi.getCauses().getAvgProgressPct(), rows);
+        }
+
+        // zilele fără înregistrări rămân fără rând (= 0); rescriem fereastra ca să prindem și ștergerile
+        List<String> flowKeys = Arrays.stream(KpiMetric.values())
+                .filter(m -> m.getKind() == KpiMetric.Kind.FLOW).map(KpiMetric::getKey).toList();
+        tx.executeWithoutResult(status -> {
+            jdbc.update("DELETE FROM crm.kpi_daily WHERE metric IN (:metrics) AND day >= :from",
+                    new MapSqlParameterSource().addValue("metrics", flowKeys).addValue("from", from));
+            jdbc.batchUpdate(UPSERT_SQL, rows.toArray(SqlParameterSource[]::new));
+        });
+        log.info("Istoric KPI: {} rânduri de la {} în {} ms", rows.size(), from, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Seria unei metrici între from și to (inclusiv), cu roll-up pe "day" / "week" / "month".
+     * FLOW → suma pe perioadă; GAUGE → ultima valoare din perioadă.
+     */
+    public List<KpiHistoryPointDto> history(String metricKey, LocalDate from, LocalDate to, String bucket) {
+        KpiMetric metric = KpiMetric.of(metricKey);
+        if (!Set.of("day", "week", "month").contains(bucket))
+            throw new IllegalArgumentException("Bucket invalid: " + bucket);
+
+        Map<LocalDate, BigDecimal> out = new TreeMap<>();
+        jdbc.query("""
+              SELECT day, value FROM crm.kpi_daily
+              WHERE metric = :metric AND day BETWEEN :from AND :to
+              ORDER BY day
+            """,
+                new MapSqlParameterSource().addValue("metric", metric.getKey()).addValue("from", from).addValue("to", to),
+                (RowCallbackHandler) rs -> {
+                    LocalDate day = rs.getDate("day").toLocalDate();
+                    BigDecimal value = rs.getBigDecimal("value");
+                    LocalDate period = switch (bucket) {
+                        case "week"  -> day.with(DayOfWeek.MONDAY);
+                        case "month" -> day.withDayOfMonth(1);
+                        default      -> day;
+                    };
+                    if (metric.getKind() == KpiMetric.Kind.FLOW) out.merge(period, value, BigDecimal::add);
+                    else out.put(period, value);
+                });
+
+        return out.entrySet().stream()
+                .map(e -> new KpiHistoryPointDto(e.getKey().toString(), e.getValue()))
+                .toList();
+    }
+
+    private void flows(String sql, String postType, String metaKey, LocalDate from,
+                       KpiMetric countMetric, KpiMetric amountMetric, List<SqlParameterSource> rows) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("postType", postType)
+                .addValue("metaKey", metaKey)
+                .addValue("from", from);
+        jdbc.query(sql, params, (RowCallbackHandler) rs -> {
+            LocalDate day = rs.getDate("day").toLocalDate();
+            rows.add(row(countMetric, day, rs.getBigDecimal("n")));
+            if (amountMetric != null) rows.add(row(amountMetric, day, rs.getBigDecimal("amount")));
+        });
+    }
+
+    private static void gauge(KpiMetric metric, LocalDate day, Number value, List<SqlParameterSource> rows) {
+        if (value != null) rows.add(row(metric, day, new BigDecimal(value.toString())));
+    }
+
+    private static SqlParameterSource row(KpiMetric metric, LocalDate day, BigDecimal value) {
+        return new MapSqlParameterSource()
+                .addValue("metric", metric.getKey())
+                .addValue("day", day)
+                .addValue("value", value);
+    }
+}
@@ -0,0 +1,34 @@
+package rotld.apscrm.api.v1.kpi.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+
+/**
+ * Metricile din istoricul zilnic (tabela kpi_daily).
+ * FLOW = total pe zi (la roll-up se adună); GAUGE = valoarea din ziua respectivă (la roll-up se ia ultima).
+ */
+@Getter
+@RequiredArgsConstructor
+public enum KpiMetric {
+    F177_AMOUNT("f177_amount", Kind.FLOW),
+    F177_COUNT("f177_count", Kind.FLOW),
+    SPONSORSHIP_AMOUNT("sponsorship_amount", Kind.FLOW),
+    SPONSORSHIP_COUNT("sponsorship_count", Kind.FLOW),
+    F230_SUBMISSIONS("f230_submissions", Kind.FLOW),
+    VOLUNTEERS_NEW("volunteers_new", Kind.FLOW),
+    VOLUNTEERS_TOTAL("volunteers_total", Kind.GAUGE),
+    CAUSES_REACHED("causes_reached", Kind.GAUGE),
+    CAUSES_PROGRESS_PCT("causes_progress_pct", Kind.GAUGE);
+
+    public enum Kind { FLOW, GAUGE }
+
+    private final String key;
+    private final Kind kind;
+
+    public static KpiMetric of(String key) {
+        return Arrays.stream(values()).filter(m -> m.key.equals(key)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Metrică necunoscută: " + key));
+    }
+}
@@ -0,0 +1,23 @@
+package rotld.apscrm.api.v1.kpi.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Secțiunile din {@link rotld.apscrm.api.v1.kpi.dto.KpiResponseDto}, fiecare calculată (și reîmprospătată) separat.
+ * postType = tipul din wp_posts pe care îl urmărim pentru detectarea schimbărilor (null = tabele CRM).
+ */
+@Getter
+@RequiredArgsConstructor
+public enum KpiSection {
+    VOLUNTEERS("volunteers", "aps_volunteer"),
+    F177("f177", "aps_s177"),
+    SPONSORSHIP("sponsorship", "aps_sponsorship"),
+    F230("f230", "formular230"),
+    IBAN("iban", "iban_beneficiar"),
+    CAUSES("causes", "cause"),
+    PERSOANE("persoane", null);
+
+    private final String key;
+    private final String postType;
+}
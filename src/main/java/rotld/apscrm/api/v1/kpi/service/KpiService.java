@@ -1,30 +1,71 @@
 package rotld.apscrm.api.v1.kpi.service;
 
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import rotld.apscrm.api.v1.kpi.dto.KpiResponseDto;
 
+import javax.sql.DataSource;
 import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class KpiService {
 
-    private final NamedParameterJdbcTemplate jdbc;
-
-    public KpiResponseDto getAll() {
-        return KpiResponseDto.builder()
-                .volunteers(fetchVolunteers())
-                .f177(fetch177())
-                .sponsorship(fetchSponsorship())
-                .f230(fetch230())
-                .iban(fetchIban())
-                .causes(fetchCauses())
-                .persoane(fetchUsers())
-                .build();
+    // extractoare din contractul PHP-serializat (alias "contract"), fără REGEXP_SUBSTR (compatibile MariaDB/MySQL 5.7+)
+    static final String CONTRACT_SUMA = """
+    SUBSTRING_INDEX(
+      SUBSTRING_INDEX(
+        SUBSTRING_INDEX(contract.meta_value, 's:4:"suma";s:', -1),
+        '"', 2
+      ),
+      '"', -1
+    )
+  """;
+    static final String CONTRACT_DATA = """
+    SUBSTRING_INDEX(
+      SUBSTRING_INDEX(
+        SUBSTRING_INDEX(contract.meta_value, 's:4:"data";s:', -1),
+        '"', 2
+      ),
+      '"', -1
+    )
+  """;
+
+    private final DataSource dataSource;
+
+    @Value("${app.kpi.section-timeout-ms:10000}")
+    private long sectionTimeoutMs;
+
+    /* template propriu cu timeout de statement = timeout-ul secțiunii: un query care depășește e oprit de driver,
+       nu rămâne să ocupe un thread din pool după ce snapshot-ul a renunțat la el */
+    private NamedParameterJdbcTemplate jdbc;
+
+    @PostConstruct
+    void init() {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setQueryTimeout((int) Math.max(1, Math.ceilDiv(sectionTimeoutMs, 1000)));
+        jdbc = new NamedParameterJdbcTemplate(template);
+    }
+
+    /**
+     * O singură secțiune. Secțiunile sunt independente; {@link KpiSnapshotService} le calculează în paralel.
+     */
+    public Object compute(KpiSection section) {
+        return switch (section) {
+            case VOLUNTEERS  -> fetchVolunteers();
+            case F177        -> fetch177();
+            case SPONSORSHIP -> fetchSponsorship();
+            case F230        -> fetch230();
+            case IBAN        -> fetchIban();
+            case CAUSES      -> fetchCauses();
+            case PERSOANE    -> fetchUsers();
+        };
     }
 
     /* ---------- Voluntari ---------- */
@@ -59,38 +100,18 @@ public class KpiService {
 
     /* ---------- Declarația 177 ---------- */
     private KpiResponseDto.F177 fetch177() {
-        // extractoare fără REGEXP_SUBSTR (compatibile MariaDB/MySQL 5.7+)
-        final String SUMA = """
-    SUBSTRING_INDEX(
-      SUBSTRING_INDEX(
-        SUBSTRING_INDEX(contract.meta_value, 's:4:"suma";s:', -1),
-        '"', 2
-      ),
-      '"', -1
-    )
-  """;
-        final String DATA = """
-    SUBSTRING_INDEX(
-      SUBSTRING_INDEX(
-        SUBSTRING_INDEX(contract.meta_value, 's:4:"data";s:', -1),
-        '"', 2
-      ),
-      '"', -1
-    )
-  """;
-
         String sql = """
     SELECT
       COUNT(*) AS companies,
-      SUM(CAST(""" + SUMA + """ 
+      SUM(CAST(""" + CONTRACT_SUMA + """ 
       AS UNSIGNED)) AS total_sum,
       SUM(
         CASE
-          WHEN STR_TO_DATE(""" + DATA + """
+          WHEN STR_TO_DATE(""" + CONTRACT_DATA + """
                , '%Y-%m-%d')
                BETWEEN DATE_FORMAT(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH), '%Y-%m-01')
                    AND LAST_DAY(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
-          THEN CAST(""" + SUMA + """
+          THEN CAST(""" + CONTRACT_SUMA + """
            AS UNSIGNED)
           ELSE 0
         END
@@ -111,36 +132,17 @@ public class KpiService {
 
     /* ---------- Sponsorizare (aps_sponsorship) ---------- */
     private KpiResponseDto.Sponsorship fetchSponsorship() {
-        final String SUMA = """
-    SUBSTRING_INDEX(
-      SUBSTRING_INDEX(
-        SUBSTRING_INDEX(contract.meta_value, 's:4:"suma";s:', -1),
-        '"', 2
-      ),
-      '"', -1
-    )
-  """;
-        final String DATA = """
-    SUBSTRING_INDEX(
-      SUBSTRING_INDEX(
-        SUBSTRING_INDEX(contract.meta_value, 's:4:"data";s:', -1),
-        '"', 2
-      ),
-      '"', -1
-    )
-  """;
-
         String sql = """
     SELECT
-      SUM(CAST(""" + SUMA + """
+      SUM(CAST(""" + CONTRACT_SUMA + """
        AS UNSIGNED)) AS total_sum,
       SUM(
         CASE
-          WHEN STR_TO_DATE(""" + DATA + """
+          WHEN STR_TO_DATE(""" + CONTRACT_DATA + """
                , '%Y-%m-%d')
                BETWEEN DATE_FORMAT(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH), '%Y-%m-01')
                    AND LAST_DAY(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
-          THEN CAST(""" + SUMA + """
+          THEN CAST(""" + CONTRACT_SUMA + """
            AS UNSIGNED)
           ELSE 0
         END
@@ -0,0 +1,209 @@
+package rotld.apscrm.api.v1.kpi.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import rotld.apscrm.api.v1.kpi.dto.KpiResponseDto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Snapshot precalculat pentru dashboard-ul KPI: fiecare secțiune e ținută în memorie cu momentul calculului,
+ * iar {@link #get()} doar întoarce DTO-ul deja asamblat.
+ * <p>
+ * O secțiune se recalculează doar când e "stale":
+ * <ul>
+ *   <li>s-a schimbat semnătura ei (COUNT / MAX(ID) / MAX(post_modified) pe post_type + data curentă,
+ *       pentru ferestrele "luna trecută" / "luna asta");</li>
+ *   <li>a venit un {@link KpiChangedEvent} (ștergeri, flag-uri, sume pe cauze etc. din CRM);</li>
+ *   <li>e mai veche decât {@code app.kpi.max-age-ms} (modificări de meta făcute direct din WordPress).</li>
+ * </ul>
+ * Secțiunile expirate se calculează în paralel, fiecare cu timeout propriu ({@code app.kpi.section-timeout-ms},
+ * aplicat și ca timeout de statement pe query-urile din {@link KpiService}); una care eșuează își păstrează
+ * valoarea veche și apare în {@code stale}, fără să pice tot dashboard-ul. O secțiune al cărei calcul anterior
+ * încă rulează nu e repornită.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KpiSnapshotService {
+
+    /* semnătură ieftină per post_type (acoperită de indexul type_status_date) + numărul de useri CRM */
+    private static final String SIGNATURE_SQL = """
+      SELECT s.post_type AS k, COUNT(*) AS n, COALESCE(MAX(s.ID), 0) AS max_id,
+             DATE_FORMAT(MAX(s.post_modified), '%Y-%m-%dT%H:%i:%s') AS modified
+      FROM wordpress.wp_posts s
+      WHERE s.post_type IN (:types)
+      GROUP BY s.post_type
+      UNION ALL
+      SELECT 'crm.users', COUNT(*), 0, NULL FROM crm.users
+    """;
+
+    private final KpiService kpiService;
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Value("${app.kpi.max-age-ms:900000}")
+    private long maxAgeMs;
+
+    @Value("${app.kpi.section-timeout-ms:10000}")
+    private long sectionTimeoutMs;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newFixedThreadPool(KpiSection.values().length, Thread.ofPlatform().name("kpi-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Section(Object value, Instant computedAt, String signature) {}
+
+    private final Map<KpiSection, Section> sections = new ConcurrentHashMap<>();
+    private final Set<KpiSection> dirty = ConcurrentHashMap.newKeySet();
+    private final Set<KpiSection> failed = ConcurrentHashMap.newKeySet();
+    /* secțiunile cu un calcul pornit și încă neterminat (inclusiv cele abandonate la timeout) */
+    private final Set<KpiSection> computing = ConcurrentHashMap.newKeySet();
+
+    private volatile KpiResponseDto snapshot;
+
+    /** Dashboard-ul: DTO-ul deja asamblat; doar primul apel (snapshot gol) calculează. */
+    public KpiResponseDto get() {
+        KpiResponseDto current = snapshot;
+        return current != null ? current : refreshStale();
+    }
+
+    /** "Force refresh": recalculează acum doar secțiunile expirate și întoarce snapshot-ul nou. */
+    public KpiResponseDto forceRefresh() {
+        return refreshStale();
+    }
+
+    @Scheduled(fixedDelayString = "${app.kpi.refresh-ms:60000}",
+               initialDelayString = "${app.kpi.refresh-ms:60000}")
+    public void scheduledRefresh() {
+        try {
+            refreshStale();
+        } catch (Exception e) {
+            log.error("Nu am putut reîmprospăta snapshot-ul KPI: {}", e.getMessage(), e);
+        }
+    }
+
+    /* după commit: altfel un refresh din fereastra dinaintea commit-ului ar recalcula datele vechi și ar scoate
+       secțiunea din dirty; fără tranzacție (fallbackExecution) evenimentul se aplică imediat */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onChange(KpiChangedEvent event) {
+        dirty.add(event.section());
+    }
+
+    private synchronized KpiResponseDto refreshStale() {
+        Map<KpiSection, String> signatures = signatures();
+        Instant now = Instant.now();
+        Instant oldest = now.minusMillis(maxAgeMs);
+
+        Map<KpiSection, Future<Object>> running = new EnumMap<>(KpiSection.class);
+        boolean failedChanged = false;
+        for (KpiSection k : KpiSection.values()) {
+            Section cur = sections.get(k);
+            if (cur != null && !dirty.contains(k) && Objects.equals(cur.signature(), signatures.get(k)) && cur.computedAt().isAfter(oldest)) {
+                continue;
+            }
+            // calculul precedent (expirat) încă rulează: nu mai punem unul peste el, rămâne stale până termină
+            if (!computing.add(k)) {
+                log.warn("KPI {}: calculul precedent încă rulează, nu îl repornim", k);
+                failedChanged |= failed.add(k);
+                continue;
+            }
+            dirty.remove(k);
+            running.put(k, executor.submit(() -> {
+                try {
+                    return kpiService.compute(k);
+                } finally {
+                    computing.remove(k);
+                }
+            }));
+        }
+
+        // toate pornesc odată, deci termenul comun = timeout-ul fiecărei secțiuni
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sectionTimeoutMs);
+        List<KpiSection> refreshed = new ArrayList<>();
+        for (Map.Entry<KpiSection, Future<Object>> e : running.entrySet()) {
+            KpiSection k = e.getKey();
+            try {
+                Object value = e.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sections.put(k, new Section(value, Instant.now(), signatures.get(k)));
+                refreshed.add(k);
+                failedChanged |= failed.remove(k);
+            } catch (Exception ex) {
+                // păstrăm valoarea veche, marcată stale; reîncercăm la următorul refresh
+                e.getValue().cancel(true);
+                dirty.add(k);
+                failedChanged |= failed.add(k);
+                if (ex instanceof InterruptedException) Thread.currentThread().interrupt();
+                Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                log.error("KPI {}: calcul eșuat ({}): {}", k, cause.getClass().getSimpleName(), cause.getMessage());
+            }
+        }
+
+        if (!refreshed.isEmpty() || failedChanged || snapshot == null) {
+            snapshot = assemble();
+            log.info("Snapshot KPI actualizat: {} în {} ms", refreshed, Instant.now().toEpochMilli() - now.toEpochMilli());
+        }
+        return snapshot;
+    }
+
+    private Map<KpiSection, String> signatures() {
+        List<String> types = Arrays.stream(KpiSection.values())
+                .map(KpiSection::getPostType).filter(Objects::nonNull).toList();
+
+        Map<String, String> byKey = new HashMap<>();
+        jdbc.query(SIGNATURE_SQL, new MapSqlParameterSource("types", types), (RowCallbackHandler) rs ->
+                byKey.put(rs.getString("k"), rs.getLong("n") + ":" + rs.getLong("max_id") + ":" + rs.getString("modified")));
+
+        String today = LocalDate.now().toString();
+        Map<KpiSection, String> out = new EnumMap<>(KpiSection.class);
+        for (KpiSection k : KpiSection.values()) {
+            String key = k.getPostType() != null ? k.getPostType() : "crm.users";
+            out.put(k, byKey.getOrDefault(key, "0") + "@" + today);
+        }
+        return out;
+    }
+
+    private KpiResponseDto assemble() {
+        Map<String, String> computedAt = new LinkedHashMap<>();
+        for (KpiSection k : KpiSection.values()) {
+            Section s = sections.get(k);
+            if (s != null) computedAt.put(k.getKey(), s.computedAt().toString());
+        }
+        return KpiResponseDto.builder()
+                .volunteers((KpiResponseDto.Volunteers) value(KpiSection.VOLUNTEERS))
+                .f177((KpiResponseDto.F177) value(KpiSection.F177))
+                .sponsorship((KpiResponseDto.Sponsorship) value(KpiSection.SPONSORSHIP))
+                .f230((KpiResponseDto.F230) value(KpiSection.F230))
+                .iban((KpiResponseDto.Iban) value(KpiSection.IBAN))
+                .causes((KpiResponseDto.Causes) value(KpiSection.CAUSES))
+                .persoane((KpiResponseDto.Persoane) value(KpiSection.PERSOANE))
+                .computedAt(computedAt)
+                .stale(Arrays.stream(KpiSection.values()).filter(failed::contains).map(KpiSection::getKey).toList())
+                .build();
+    }
+
+    private Object value(KpiSection k) {
+        Section s = sections.get(k);
+        return s == null ? null : s.value();
+    }
+}
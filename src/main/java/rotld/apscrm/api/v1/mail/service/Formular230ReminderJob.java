@@ -1,18 +1,33 @@
 package rotld.apscrm.api.v1.mail.service;
 
-import jakarta.mail.MessagingException;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.support.CronExpression;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import rotld.apscrm.api.v1.f230.repository.F230;
+import rotld.apscrm.api.v1.f230.service.F230MailIndex;
 import rotld.apscrm.api.v1.f230.service.F230Service;
-import rotld.apscrm.services.EmailSenderService;
+import rotld.apscrm.services.BulkMailService;
+import rotld.apscrm.services.EmailTemplates;
+import rotld.apscrm.services.JobLockService;
 
-import java.io.UnsupportedEncodingException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
@@ -20,16 +35,144 @@ import java.util.Objects;
 public class Formular230ReminderJob {
 
     private final F230Service f230Service;
-    private final EmailSenderService emailSenderService;
+    private final F230MailIndex mailIndex;
+    private final BulkMailService bulkMailService;
+    private final EmailTemplates emailTemplates;
+    private final JobLockService jobLock;
+
+    private static final String RENEWAL_TEMPLATE = "renewal_formular230.html";
+    private static final String BIRTHDAY_TEMPLATE = "birthday.html";
+
+    private static final String RENEWAL_JOB = "f230-renewal-mail";
+    private static final String BIRTHDAY_JOB = "f230-birthday-mail";
 
     // rulează în fiecare an pe
-    @Scheduled(cron = "0 0 10 10 1 *")   // 10 ianuarie, ora 10:00
-    @Scheduled(cron = "0 0 10 1 5 *")   // 10 mai, ora 10:00
+    private static final String RENEWAL_JAN_CRON = "0 0 10 10 1 *";   // 10 ianuarie, ora 10:00
+    private static final String RENEWAL_MAY_CRON = "0 0 10 1 5 *";    // 1 mai, ora 10:00
+    private static final String BIRTHDAY_CRON = "0 0 10 * * *";
+
+    private static final Duration LEASE = Duration.ofHours(2);
+    /* recuperarea pornește după ce un nod căzut a ieșit sigur din listă (node-ttl) */
+    private static final Duration CATCH_UP_GRACE = Duration.ofMinutes(5);
+    /* o declanșare mai veche de atât nu se mai recuperează (mail-urile sunt „de azi”) */
+    private static final Duration CATCH_UP_WINDOW = Duration.ofHours(12);
+    /* ceasurile nodurilor față de NOW(3) din baza de date */
+    private static final Duration CLOCK_SKEW = Duration.ofHours(1);
+
+    /* link-urile fixe din footer, legate o singură dată în template-uri */
+    private static final Map<String, String> LINKS = Map.of(
+            "website_url", "https://actiunepentrusanatate.ro",
+            "facebook_url", "https://facebook.com/actiunepentrusanatate",
+            "instagram_url", "https://instagram.com/actiunepentrusanatate",
+            "linkedin_url", "https://linkedin.com/company/actiunepentrusanatate",
+            "unsubscribe_url", "https://actiunepentrusanatate.ro/unsubscribe");
+
+    @Value("${app.jobs.mail-shards:4}")
+    private int shards;
+
+    private final Map<String, EmailTemplates.Template> compiled = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        for (String name : List.of(RENEWAL_TEMPLATE, BIRTHDAY_TEMPLATE)) compiled.put(name, emailTemplates.get(name).with(LINKS));
+    }
+
+    @Scheduled(cron = RENEWAL_JAN_CRON)
+    @Scheduled(cron = RENEWAL_MAY_CRON)
+    public synchronized void scheduledReminders() {
+        run(jobLock.acquireShards(RENEWAL_JOB, shards, LEASE, Duration.ofHours(12)), this::renewalTargets, this::sendReminders);
+    }
+
+    @Scheduled(cron = BIRTHDAY_CRON)
+    public synchronized void scheduledBirthdayEmails() {
+        run(jobLock.acquireShards(BIRTHDAY_JOB, shards, LEASE, Duration.ofHours(12)), this::birthdayTargets, this::sendBirthdayEmails);
+    }
+
+    /**
+     * Shard-urile se atribuie după rangul nodului în momentul declanșării; dacă proprietarul unui shard a căzut
+     * chiar atunci (încă în lista de noduri active), shard-ul nu l-a rulat nimeni. Aici orice nod preia, după
+     * declanșare, shard-urile libere necompletate de la ultima declanșare. Metodele programate sunt
+     * {@code synchronized}: un lease e reluabil de nodul care îl ține, deci recuperarea nu trebuie să ruleze în
+     * paralel cu rularea normală de pe același nod.
+     */
+    @Scheduled(fixedDelayString = "${app.jobs.catch-up-ms:600000}", initialDelayString = "${app.jobs.catch-up-ms:600000}")
+    public synchronized void catchUp() {
+        catchUp(RENEWAL_JOB, List.of(RENEWAL_JAN_CRON, RENEWAL_MAY_CRON), this::renewalTargets, this::sendReminders);
+        catchUp(BIRTHDAY_JOB, List.of(BIRTHDAY_CRON), this::birthdayTargets, this::sendBirthdayEmails);
+    }
+
+    /** Declanșare manuală: toate formularele vizate azi, pe nodul curent. */
     public void sendReminders() {
+        sendReminders(f230Service.findByIds(renewalTargets()));
+    }
+
+    public void sendBirthdayEmails() {
+        sendBirthdayEmails(f230Service.findByIds(birthdayTargets()));
+    }
+
+    /* doar formularele vizate azi, din index; se încarcă apoi complet numai acestea */
+    private List<Integer> renewalTargets() {
+        mailIndex.refresh();
+        return mailIndex.renewals(LocalDate.now().getYear());
+    }
+
+    private List<Integer> birthdayTargets() {
+        mailIndex.refresh();
+        return mailIndex.birthdays(LocalDate.now());
+    }
+
+    private void catchUp(String job, List<String> crons, Supplier<List<Integer>> targets, Consumer<List<F230>> send) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime due = lastFire(crons, now);
+        if (due == null || now.isBefore(due.plus(CATCH_UP_GRACE))) return;
+        Instant doneSince = due.atZone(ZoneId.systemDefault()).toInstant().minus(CLOCK_SKEW);
+        List<JobLockService.Lease> leases = jobLock.acquireUnfinished(job, shards, LEASE, doneSince);
+        if (leases.isEmpty()) return;
+        log.warn("Job {}: recuperăm shard-urile {} necompletate de la {}", job,
+                leases.stream().map(JobLockService.Lease::shard).toList(), due);
+        try {
+            run(leases, targets, send);
+        } catch (RuntimeException e) {
+            log.error("Recuperarea job-ului {} a eșuat: {}", job, e.getMessage(), e);
+        }
+    }
+
+    /** ultima declanșare a unuia dintre cron-uri din {@code CATCH_UP_WINDOW}, sau null */
+    static LocalDateTime lastFire(List<String> crons, LocalDateTime now) {
+        LocalDateTime last = null;
+        for (String cron : crons) {
+            CronExpression expr = CronExpression.parse(cron);
+            for (LocalDateTime t = expr.next(now.minus(CATCH_UP_WINDOW)); t != null && !t.isAfter(now); t = expr.next(t)) {
+                if (last == null || t.isAfter(last)) last = t;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Cu mai multe instanțe fiecare nod ia doar shard-urile lui (lease în crm.scheduled_job_lock) și trimite
+     * formularelor cu {@code id mod shards} în ele; un shard rulat deja azi (ceas decalat) e sărit.
+     */
+    private void run(List<JobLockService.Lease> leases, Supplier<List<Integer>> targets, Consumer<List<F230>> send) {
+        if (leases.isEmpty()) return;
+        try {
+            Set<Integer> mine = leases.stream().map(JobLockService.Lease::shard).collect(Collectors.toSet());
+            int n = leases.getFirst().shards();
+            send.accept(f230Service.findByIds(targets.get().stream()
+                    .filter(id -> mine.contains(Math.floorMod(id, n)))
+                    .toList()));
+            leases.forEach(jobLock::complete);
+        } catch (RuntimeException e) {
+            leases.forEach(jobLock::release);
+            throw e;
+        }
+    }
+
+    private void sendReminders(List<F230> forms) {
         LocalDate today = LocalDate.now();
         int currentYear = today.getYear();
 
-        List<F230> forms = f230Service.getAll(); // creezi un listAll în service dacă nu ai
+        List<BulkMailService.Mail> mails = new ArrayList<>();
         for (F230 form : forms) {
             try {
                 int formYear = Integer.parseInt(form.getYear());   // anul pentru care a fost completat
@@ -37,22 +180,20 @@ public class Formular230ReminderJob {
 
                 if (currentYear == formYear + duration & Objects.equals(form.getEmail(), "cristianhreceniuc1@gmail.com")) {
                     String subject = "Reînnoire Formular 230 - Asociația Acțiune pentru Sănătate";
-                    String emailContent = buildEmail(form, duration, "renewal_formular230.html");
-
-                    emailSenderService.sendEmail(form.getEmail(), subject, emailContent);
-                    log.info("Reminder trimis către {}", form.getEmail());
+                    String emailContent = buildEmail(form, duration, RENEWAL_TEMPLATE);
+                    mails.add(new BulkMailService.Mail(form.getEmail(), subject, emailContent));
                 }
             } catch (Exception e) {
                 log.error("Eroare la procesarea formularului {}", form.getId(), e);
             }
         }
+        send(RENEWAL_TEMPLATE, mails);
     }
 
-    @Scheduled(cron = "0 0 10 * * *")
-    public void sendBirthdayEmails() {
+    private void sendBirthdayEmails(List<F230> forms) {
         LocalDate today = LocalDate.now();
-        List<F230> forms = f230Service.getAll(); // creezi un listAll în service dacă nu ai
 
+        List<BulkMailService.Mail> mails = new ArrayList<>();
         for (F230 form : forms) {
             try {
                 String cnp = form.getCnp(); // asigură-te că în DTO ai câmpul CNP
@@ -64,40 +205,29 @@ public class Formular230ReminderJob {
 
                 if (today.getMonthValue() == month && today.getDayOfMonth() == day) {
                     String subject = "🎂 La Mulți Ani din partea Asociației Acțiune pentru Sănătate!";
-                    String emailContent = buildEmail(form, 1, "birthday.html");
-
-                    emailSenderService.sendEmail(form.getEmail(), subject, emailContent);
-                    log.info("Email de La Mulți Ani trimis către {}.)", form.getEmail());
+                    String emailContent = buildEmail(form, 1, BIRTHDAY_TEMPLATE);
+                    mails.add(new BulkMailService.Mail(form.getEmail(), subject, emailContent));
                 }
-            } catch (MessagingException | UnsupportedEncodingException e) {
-                log.error("Eroare la trimiterea emailului de ziua cuiva", e);
             } catch (Exception ex) {
                 log.warn("CNP invalid pentru {}", form.getId());
             }
         }
+        send(BIRTHDAY_TEMPLATE, mails);
     }
 
-    private String buildEmail(F230 form, int duration, String templateName) {
-        String template = loadTemplate(templateName); // încarci din resources/email_templates/formular230.html
-
-        return template
-                .replace("{{user_name}}", form.getFirstName() + " " + form.getLastName())
-                .replace("{{years_since_completion}}", String.valueOf(duration))
-                .replace("{{user_email}}", form.getEmail())
-                .replace("{{website_url}}", "https://actiunepentrusanatate.ro")
-                .replace("{{facebook_url}}", "https://facebook.com/actiunepentrusanatate")
-                .replace("{{instagram_url}}", "https://instagram.com/actiunepentrusanatate")
-                .replace("{{linkedin_url}}", "https://linkedin.com/company/actiunepentrusanatate")
-                .replace("{{unsubscribe_url}}", "https://actiunepentrusanatate.ro/unsubscribe");
+    /** toate email-urile unui job pe conexiunile SMTP refolosite; eșecurile rămân în log per destinatar */
+    private void send(String template, List<BulkMailService.Mail> mails) {
+        if (mails.isEmpty()) return;
+        BulkMailService.Report report = bulkMailService.send(template, mails);
+        for (BulkMailService.Outcome o : report.failures()) {
+            log.error("Email {} netrimis către {} după {} încercări: {}", template, o.to(), o.attempts(), o.error());
+        }
     }
 
-    private String loadTemplate(String name) {
-        try {
-            return new String(
-                    getClass().getResourceAsStream("/template/%s".formatted(name)).readAllBytes()
-            );
-        } catch (Exception e) {
-            throw new RuntimeException("Nu pot încărca template email", e);
-        }
+    private String buildEmail(F230 form, int duration, String templateName) {
+        return compiled.get(templateName).render(Map.of(
+                "user_name", form.getFirstName() + " " + form.getLastName(),
+                "years_since_completion", String.valueOf(duration),
+                "user_email", form.getEmail()));
     }
 }
@@ -4,9 +4,14 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import rotld.apscrm.api.v1.notification.service.NotificationScheduler;
+import rotld.apscrm.api.v1.notification.service.PushDispatcher;
+import rotld.apscrm.api.v1.notification.service.PushJob;
 import rotld.apscrm.api.v1.notification.service.PushNotificationService;
 import rotld.apscrm.api.v1.user.dto.UserRole;
 
@@ -18,6 +23,7 @@ import rotld.apscrm.api.v1.user.dto.UserRole;
 public class AdminNotificationController {
 
     private final PushNotificationService pushNotificationService;
+    private final NotificationScheduler notificationScheduler;
 
     /**
      * Send notification about new module to all users
@@ -28,7 +34,7 @@ public class AdminNotificationController {
     ) {
         log.info("Sending new module notification: {}", request.title());
         
-        pushNotificationService.sendNewContentNotification(
+        PushJob job = pushNotificationService.sendNewContentNotification(
                 request.title(),
                 "modul",
                 request.moduleId()
@@ -36,7 +42,8 @@ public class AdminNotificationController {
 
         return ResponseEntity.ok(new NotificationResponse(
                 true,
-                "Notification sent to all users about new module: " + request.title()
+                "Notification queued for all users about new module: " + request.title(),
+                job.getId()
         ));
     }
 
@@ -49,7 +56,7 @@ public class AdminNotificationController {
     ) {
         log.info("Sending new submodule notification: {}", request.title());
         
-        pushNotificationService.sendNewContentNotification(
+        PushJob job = pushNotificationService.sendNewContentNotification(
                 request.title(),
                 "submodul",
                 request.submoduleId()
@@ -57,7 +64,8 @@ public class AdminNotificationController {
 
         return ResponseEntity.ok(new NotificationResponse(
                 true,
-                "Notification sent to all users about new submodule: " + request.title()
+                "Notification queued for all users about new submodule: " + request.title(),
+                job.getId()
         ));
     }
 
@@ -70,7 +78,7 @@ public class AdminNotificationController {
     ) {
         log.info("Broadcasting notification: {}", request.title());
         
-        pushNotificationService.sendToAllUsers(
+        PushJob job = pushNotificationService.sendToAllUsers(
                 request.title(),
                 request.body(),
                 java.util.Map.of("type", "broadcast")
@@ -78,7 +86,8 @@ public class AdminNotificationController {
 
         return ResponseEntity.ok(new NotificationResponse(
                 true,
-                "Broadcast notification sent to all users"
+                "Broadcast notification queued for all users",
+                job.getId()
         ));
     }
 
@@ -92,7 +101,7 @@ public class AdminNotificationController {
     ) {
         log.info("Sending notification to user {}: {}", userId, request.title());
         
-        pushNotificationService.sendToUser(
+        PushJob job = pushNotificationService.sendToUser(
                 userId,
                 request.title(),
                 request.body(),
@@ -101,7 +110,8 @@ public class AdminNotificationController {
 
         return ResponseEntity.ok(new NotificationResponse(
                 true,
-                "Notification sent to user: " + userId
+                "Notification queued for user: " + userId,
+                job.getId()
         ));
     }
 
@@ -116,58 +126,76 @@ public class AdminNotificationController {
                 request.title(), request.target(), request.role(), request.isPremium());
         
         java.util.Map<String, String> data = java.util.Map.of("type", "admin_broadcast");
-        int sentCount = 0;
+        PushJob job;
         String targetDescription;
 
         switch (request.target()) {
             case "all" -> {
-                sentCount = pushNotificationService.sendToAllUsersAndCount(request.title(), request.body(), data);
+                job = pushNotificationService.sendToAllUsers(request.title(), request.body(), data);
                 targetDescription = "toți utilizatorii";
             }
             case "premium" -> {
-                sentCount = pushNotificationService.sendToPremiumUsers(request.title(), request.body(), data);
+                job = pushNotificationService.sendToPremiumUsers(request.title(), request.body(), data);
                 targetDescription = "utilizatorii premium";
             }
             case "non_premium" -> {
-                sentCount = pushNotificationService.sendToNonPremiumUsers(request.title(), request.body(), data);
+                job = pushNotificationService.sendToNonPremiumUsers(request.title(), request.body(), data);
                 targetDescription = "utilizatorii non-premium";
             }
             case "role" -> {
                 if (request.role() == null) {
                     return ResponseEntity.badRequest().body(new NotificationResponse(
-                            false, "Role is required when target is 'role'"
+                            false, "Role is required when target is 'role'", null
                     ));
                 }
                 try {
                     UserRole role = UserRole.valueOf(request.role().toUpperCase());
                     if (request.isPremium() != null) {
-                        sentCount = pushNotificationService.sendToUsersByRoleAndPremium(
+                        job = pushNotificationService.sendToUsersByRoleAndPremium(
                                 role, request.isPremium(), request.title(), request.body(), data
                         );
                         targetDescription = String.format("utilizatorii cu rol %s și premium=%s", role, request.isPremium());
                     } else {
-                        sentCount = pushNotificationService.sendToUsersByRole(role, request.title(), request.body(), data);
+                        job = pushNotificationService.sendToUsersByRole(role, request.title(), request.body(), data);
                         targetDescription = "utilizatorii cu rol " + role;
                     }
                 } catch (IllegalArgumentException e) {
                     return ResponseEntity.badRequest().body(new NotificationResponse(
-                            false, "Invalid role: " + request.role()
+                            false, "Invalid role: " + request.role(), null
                     ));
                 }
             }
             default -> {
                 return ResponseEntity.badRequest().body(new NotificationResponse(
-                        false, "Invalid target. Use: all, premium, non_premium, or role"
+                        false, "Invalid target. Use: all, premium, non_premium, or role", null
                 ));
             }
         }
 
         return ResponseEntity.ok(new NotificationResponse(
                 true,
-                String.format("Notificare trimisă către %s (%d dispozitive)", targetDescription, sentCount)
+                "Notificare în curs de trimitere către " + targetDescription,
+                job.getId()
         ));
     }
 
+    /**
+     * Live progress of a queued notification (tokens, batches, sent / failed / invalid)
+     */
+    @GetMapping("/jobs/{jobId}")
+    public PushJob.Progress jobProgress(@PathVariable String jobId) {
+        return pushNotificationService.progress(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown notification job: " + jobId));
+    }
+
+    /**
+     * Push pipeline metrics: dispatcher limits / queue and per-reminder send counters
+     */
+    @GetMapping("/stats")
+    public NotificationStats stats() {
+        return new NotificationStats(pushNotificationService.dispatcherStats(), notificationScheduler.stats());
+    }
+
     // Request/Response DTOs
     public record NewModuleRequest(
             @NotBlank(message = "Module title is required")
@@ -207,8 +235,14 @@ public class AdminNotificationController {
             Boolean isPremium // optional filter for role target
     ) {}
 
+    public record NotificationStats(
+            PushDispatcher.Stats dispatcher,
+            java.util.List<NotificationScheduler.ReminderStats> reminders
+    ) {}
+
     public record NotificationResponse(
             boolean success,
-            String message
+            String message,
+            String jobId
     ) {}
 }
@@ -13,7 +13,9 @@ import rotld.apscrm.api.v1.notification.repository.UserFcmTokenRepo;
 import rotld.apscrm.api.v1.user.repository.User;
 import rotld.apscrm.api.v1.user.repository.UserRepository;
 
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
 
@@ -67,6 +69,15 @@ public class NotificationController {
         // Update user's last activity
         userRepository.updateLastActivity(user.getId(), LocalDateTime.now());
 
+        // Device time zone for local-time reminders; an unknown id is ignored (default zone is used)
+        if (request.timeZone() != null && !request.timeZone().isBlank()) {
+            try {
+                userRepository.updateTimeZone(user.getId(), ZoneId.of(request.timeZone().trim()).getId());
+            } catch (DateTimeException e) {
+                log.warn("Ignoring invalid time zone '{}' for user: {}", request.timeZone(), user.getId());
+            }
+        }
+
         return ResponseEntity.ok().build();
     }
 
@@ -100,7 +111,8 @@ public class NotificationController {
     public record RegisterTokenRequest(
             @NotBlank(message = "FCM token is required")
             String fcmToken,
-            String deviceInfo
+            String deviceInfo,
+            String timeZone // IANA id, e.g. "Europe/Bucharest" (optional)
     ) {}
 
     public record UnregisterTokenRequest(
@@ -9,6 +9,7 @@ import org.springframework.transaction.annotation.Transactional;
 import rotld.apscrm.api.v1.notification.entities.UserFcmToken;
 import rotld.apscrm.api.v1.user.repository.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +27,14 @@ public interface UserFcmTokenRepo extends JpaRepository<UserFcmToken, Long> {
     @Query("DELETE FROM UserFcmToken t WHERE t.fcmToken = :fcmToken")
     void deleteByFcmToken(@Param("fcmToken") String fcmToken);
     
+    /**
+     * Remove a chunk of dead tokens in one statement
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UserFcmToken t WHERE t.fcmToken IN :fcmTokens")
+    int deleteByFcmTokenIn(@Param("fcmTokens") Collection<String> fcmTokens);
+    
     @Modifying
     @Transactional
     @Query("DELETE FROM UserFcmToken t WHERE t.user.id = :userId")
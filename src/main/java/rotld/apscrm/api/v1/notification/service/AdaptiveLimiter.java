@@ -0,0 +1,60 @@
+package rotld.apscrm.api.v1.notification.service;
+
+/**
+ * AIMD limit on concurrent FCM multicasts: every completed multicast grows the limit by 1/limit (about +1 per
+ * full window), a quota error halves it. Halving happens at most once per cooldown, so a burst of 429s from
+ * multicasts already in flight counts as one signal.
+ */
+final class AdaptiveLimiter {
+
+    private final int min;
+    private final int max;
+    private final long cooldownNanos;
+
+    private double limit;
+    private int inFlight;
+    private long lastDecrease;
+
+    AdaptiveLimiter(int min, int max, long cooldownMs) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.cooldownNanos = cooldownMs * 1_000_000L;
+        this.limit = this.max;
+        this.lastDecrease = System.nanoTime() - cooldownNanos;
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) return false;
+        inFlight++;
+        return true;
+    }
+
+    /** Multicast answered without a quota error. */
+    synchronized void onSuccess() {
+        inFlight--;
+        limit = Math.min(max, limit + 1.0 / limit);
+    }
+
+    /** @return true if the limit was actually lowered */
+    synchronized boolean onThrottled() {
+        inFlight--;
+        long now = System.nanoTime();
+        if (now - lastDecrease < cooldownNanos) return false;
+        lastDecrease = now;
+        limit = Math.max(min, limit / 2);
+        return true;
+    }
+
+    /** Permit returned without a signal (network error, nothing sent). */
+    synchronized void onDropped() {
+        inFlight--;
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,120 @@
+package rotld.apscrm.api.v1.notification.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.messaging.*;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Thin wrapper over the Firebase Admin SDK: initialization and one multicast call.
+ * Retries, batching and token cleanup live in {@link PushDispatcher}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FcmSender {
+
+    /** FCM allows max 500 tokens per multicast */
+    public static final int MAX_TOKENS_PER_MULTICAST = 500;
+
+    private final ResourceLoader resourceLoader;
+
+    @Value("${firebase.config-path}")
+    private String firebaseConfigPath;
+
+    private volatile boolean firebaseInitialized = false;
+
+    @PostConstruct
+    public void initialize() {
+        try {
+            if (FirebaseApp.getApps().isEmpty()) {
+                Resource resource = resourceLoader.getResource(firebaseConfigPath);
+
+                if (!resource.exists()) {
+                    log.warn("Firebase config file not found at: {}. Push notifications will be disabled.", firebaseConfigPath);
+                    return;
+                }
+
+                FirebaseOptions options = FirebaseOptions.builder()
+                        .setCredentials(GoogleCredentials.fromStream(resource.getInputStream()))
+                        .build();
+
+                FirebaseApp.initializeApp(options);
+                firebaseInitialized = true;
+                log.info("Firebase initialized successfully for push notifications");
+            } else {
+                firebaseInitialized = true;
+                log.info("Firebase already initialized");
+            }
+        } catch (IOException e) {
+            log.error("Failed to initialize Firebase: {}", e.getMessage());
+        }
+    }
+
+    public boolean isInitialized() {
+        return firebaseInitialized;
+    }
+
+    /**
+     * Send one multicast (at most {@link #MAX_TOKENS_PER_MULTICAST} tokens).
+     * Responses are in the same order as {@code tokens}.
+     */
+    public BatchResponse send(List<String> tokens, PushMessage message) throws FirebaseMessagingException {
+        return FirebaseMessaging.getInstance().sendEachForMulticast(multicast(tokens, message));
+    }
+
+    /** Non-blocking {@link #send}: the future fails with a {@link FirebaseMessagingException}. */
+    public ApiFuture<BatchResponse> sendAsync(List<String> tokens, PushMessage message) {
+        return FirebaseMessaging.getInstance().sendEachForMulticastAsync(multicast(tokens, message));
+    }
+
+    /**
+     * Dry run against FCM: nothing is delivered, but dead tokens come back UNREGISTERED / INVALID_ARGUMENT.
+     */
+    public BatchResponse validate(List<String> tokens) throws FirebaseMessagingException {
+        MulticastMessage probe = MulticastMessage.builder()
+                .addAllTokens(tokens)
+                .putData("type", "token_check")
+                .build();
+        return FirebaseMessaging.getInstance().sendEachForMulticast(probe, true);
+    }
+
+    private static MulticastMessage multicast(List<String> tokens, PushMessage message) {
+        MulticastMessage.Builder messageBuilder = MulticastMessage.builder()
+                .addAllTokens(tokens)
+                .setNotification(Notification.builder()
+                        .setTitle(message.title())
+                        .setBody(message.body())
+                        .build())
+                .setAndroidConfig(AndroidConfig.builder()
+                        .setPriority(AndroidConfig.Priority.HIGH)
+                        .setNotification(AndroidNotification.builder()
+                                .setSound("default")
+                                .setChannelId("logopedy_notifications")
+                                .build())
+                        .build())
+                .setApnsConfig(ApnsConfig.builder()
+                        .setAps(Aps.builder()
+                                .setSound("default")
+                                .setBadge(1)
+                                .build())
+                        .build());
+
+        if (message.data() != null && !message.data().isEmpty()) {
+            messageBuilder.putAllData(message.data());
+        }
+
+        return messageBuilder.build();
+    }
+}
@@ -0,0 +1,183 @@
+package rotld.apscrm.api.v1.notification.service;
+
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.SendResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import rotld.apscrm.api.v1.notification.repository.UserFcmTokenRepo;
+import rotld.apscrm.services.JobLockService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Removes dead FCM tokens off the send path.
+ * <p>
+ * The dispatcher only marks UNREGISTERED / INVALID_ARGUMENT tokens ({@link #markDead}); a scheduled flush
+ * deletes them in chunks with one {@code DELETE ... WHERE fcm_token IN (...)} each, so a broadcast after an app
+ * update costs a handful of statements instead of one per token.
+ * <p>
+ * A periodic sweep also catches tokens that never get a send: devices not re-registered for
+ * {@code app.push.token-stale-days} are deleted, and the ones idle for {@code app.push.token-verify-days}
+ * are checked with a dry-run multicast (nothing is delivered).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FcmTokenCleaner {
+
+    private static final String IDLE_TOKENS_SQL = """
+      SELECT id, fcm_token FROM crm.user_fcm_token
+      WHERE last_used_at < :before AND id > :afterId
+      ORDER BY id
+      LIMIT :limit
+    """;
+
+    private static final String DELETE_STALE_SQL = """
+      DELETE FROM crm.user_fcm_token WHERE last_used_at < :before LIMIT :limit
+    """;
+
+    private final UserFcmTokenRepo fcmTokenRepo;
+    private final FcmSender fcmSender;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final JobLockService jobLock;
+
+    @Value("${app.push.token-delete-chunk:500}")
+    private int deleteChunk;
+
+    @Value("${app.push.token-stale-days:270}")
+    private int staleDays;
+
+    @Value("${app.push.token-verify-days:30}")
+    private int verifyDays;
+
+    @Value("${app.push.token-verify-max:50000}")
+    private int verifyMax;
+
+    private final Set<String> dead = ConcurrentHashMap.newKeySet();
+
+    public void markDead(String token) {
+        dead.add(token);
+    }
+
+    public int pending() {
+        return dead.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.push.token-flush-ms:5000}")
+    public void flush() {
+        if (dead.isEmpty()) return;
+        int removed = 0;
+        List<String> chunk = new ArrayList<>(deleteChunk);
+        Iterator<String> it = dead.iterator();
+        while (it.hasNext()) {
+            chunk.add(it.next());
+            it.remove();
+            if (chunk.size() == deleteChunk || !it.hasNext()) {
+                try {
+                    removed += fcmTokenRepo.deleteByFcmTokenIn(chunk);
+                } catch (Exception e) {
+                    // retried on the next flush
+                    dead.addAll(chunk);
+                    log.error("Could not remove {} invalid FCM tokens: {}", chunk.size(), e.getMessage());
+                    return;
+                }
+                chunk = new ArrayList<>(deleteChunk);
+            }
+        }
+        log.info("Removed {} invalid FCM tokens", removed);
+    }
+
+    /** Weekly; with several instances only the node holding the lease sweeps. */
+    @Scheduled(cron = "${app.push.token-sweep-cron:0 30 3 * * SUN}")
+    public void scheduledSweep() {
+        try {
+            jobLock.runExclusive("fcm-token-sweep", Duration.ofHours(2), Duration.ofHours(12), lease -> sweep());
+        } catch (Exception e) {
+            log.error("FCM token sweep failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public void sweep() {
+        try {
+            long start = System.currentTimeMillis();
+            int stale = deleteStale();
+            int invalid = fcmSender.isInitialized() ? verifyIdle() : 0;
+            flush();
+            log.info("FCM token sweep: {} stale, {} invalid removed in {} ms", stale, invalid, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("FCM token sweep failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private int deleteStale() {
+        MapSqlParameterSource p = new MapSqlParameterSource()
+                .addValue("before", LocalDateTime.now().minusDays(staleDays))
+                .addValue("limit", deleteChunk);
+        int total = 0;
+        int n;
+        do {
+            n = jdbc.update(DELETE_STALE_SQL, p);
+            total += n;
+        } while (n == deleteChunk);
+        return total;
+    }
+
+    /** Dry-run multicasts over idle tokens, keyset by id, at most {@code verifyMax} tokens per sweep. */
+    private int verifyIdle() {
+        LocalDateTime before = LocalDateTime.now().minusDays(verifyDays);
+        int batch = FcmSender.MAX_TOKENS_PER_MULTICAST;
+        long afterId = 0;
+        int checked = 0;
+        int invalid = 0;
+        while (checked < verifyMax) {
+            List<Long> ids = new ArrayList<>(batch);
+            List<String> tokens = new ArrayList<>(batch);
+            jdbc.query(IDLE_TOKENS_SQL, new MapSqlParameterSource()
+                    .addValue("before", before)
+                    .addValue("afterId", afterId)
+                    .addValue("limit", batch), (RowCallbackHandler) rs -> {
+                ids.add(rs.getLong("id"));
+                tokens.add(rs.getString("fcm_token"));
+            });
+            if (tokens.isEmpty()) break;
+            afterId = ids.getLast();
+            checked += tokens.size();
+
+            BatchResponse response;
+            try {
+                response = fcmSender.validate(tokens);
+            } catch (FirebaseMessagingException e) {
+                log.warn("FCM token sweep stopped after {} tokens: {}", checked, e.getMessage());
+                break;
+            }
+            List<SendResponse> responses = response.getResponses();
+            for (int i = 0; i < responses.size(); i++) {
+                FirebaseMessagingException ex = responses.get(i).getException();
+                if (ex != null && isDead(ex.getMessagingErrorCode())) {
+                    markDead(tokens.get(i));
+                    invalid++;
+                }
+            }
+            if (tokens.size() < batch) break;
+        }
+        return invalid;
+    }
+
+    static boolean isDead(MessagingErrorCode code) {
+        return code == MessagingErrorCode.UNREGISTERED || code == MessagingErrorCode.INVALID_ARGUMENT;
+    }
+}
@@ -0,0 +1,72 @@
+package rotld.apscrm.api.v1.notification.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Writes notification intents to crm.notification_outbox on the caller's connection, so the row is part
+ * of the caller's transaction: a rollback discards it, a commit makes it visible to {@link NotificationOutboxRelay}.
+ * A second intent with the same idempotency key is ignored.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationOutbox {
+
+    private static final String INSERT_SQL = """
+      INSERT INTO crm.notification_outbox
+        (idempotency_key, audience_kind, audience_user_id, audience_role, audience_premium, title, body, data)
+      VALUES (:key, :kind, :userId, :role, :premium, :title, :body, :data)
+      ON DUPLICATE KEY UPDATE id = id
+    """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final ObjectMapper om;
+    private final NotificationOutboxRelay relay;
+
+    /** @return false if an intent with the same key already exists */
+    public boolean add(String idempotencyKey, PushAudience audience, PushMessage message) {
+        if (audience.kind() == PushAudience.Kind.COHORT)
+            throw new IllegalArgumentException("Cohort notifications cannot go through the outbox");
+        String data;
+        try {
+            data = message.data() == null || message.data().isEmpty() ? null : om.writeValueAsString(message.data());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid notification data", e);
+        }
+
+        int inserted = jdbc.update(INSERT_SQL, new MapSqlParameterSource()
+                .addValue("key", idempotencyKey)
+                .addValue("kind", audience.kind().name())
+                .addValue("userId", audience.userId())
+                .addValue("role", audience.role() != null ? audience.role().name() : null)
+                .addValue("premium", audience.premium())
+                .addValue("title", message.title())
+                .addValue("body", message.body())
+                .addValue("data", data));
+        if (inserted != 1) {
+            log.debug("Notification {} already in outbox", idempotencyKey);
+            return false;
+        }
+
+        // do not wait for the poll: wake the relay right after commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    relay.nudge();
+                }
+            });
+        } else {
+            relay.nudge();
+        }
+        return true;
+    }
+}
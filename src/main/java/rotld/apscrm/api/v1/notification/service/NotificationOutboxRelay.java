@@ -0,0 +1,238 @@
+package rotld.apscrm.api.v1.notification.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import rotld.apscrm.api.v1.user.dto.UserRole;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drains crm.notification_outbox into {@link PushDispatcher}.
+ * <p>
+ * Rows are claimed in batches with {@code SELECT ... FOR UPDATE SKIP LOCKED} in a short transaction
+ * (PENDING → CLAIMED, claimed_by = this node), so several app nodes can drain the table in parallel without
+ * sending a row twice. When the push job finishes the row becomes SENT; a failed job goes back to PENDING
+ * with backoff until {@code app.push.outbox.max-attempts}. Rows left CLAIMED by a node that died are released
+ * after {@code app.push.outbox.lease-seconds}.
+ * <p>
+ * The relay runs after every commit that added rows ({@link #nudge()}) and on a fixed poll as a safety net.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationOutboxRelay {
+
+    private static final String CLAIM_SQL = """
+      SELECT id, audience_kind, audience_user_id, audience_role, audience_premium, title, body, data, attempts
+      FROM crm.notification_outbox
+      WHERE status = 'PENDING' AND available_at <= NOW(3)
+      ORDER BY id
+      LIMIT :limit
+      FOR UPDATE SKIP LOCKED
+    """;
+
+    private static final String MARK_CLAIMED_SQL = """
+      UPDATE crm.notification_outbox
+      SET status = 'CLAIMED', claimed_by = :node, claimed_at = NOW(3), attempts = attempts + 1
+      WHERE id IN (:ids)
+    """;
+
+    private static final String MARK_SENT_SQL = """
+      UPDATE crm.notification_outbox
+      SET status = 'SENT', sent_at = NOW(3), job_id = :jobId, last_error = NULL
+      WHERE id = :id AND status = 'CLAIMED' AND claimed_by = :node
+    """;
+
+    private static final String MARK_FAILED_SQL = """
+      UPDATE crm.notification_outbox
+      SET status = :status, claimed_by = NULL, job_id = :jobId, last_error = :error,
+          available_at = DATE_ADD(NOW(3), INTERVAL :delayMs * 1000 MICROSECOND)
+      WHERE id = :id AND status = 'CLAIMED' AND claimed_by = :node
+    """;
+
+    private static final String RELEASE_EXPIRED_SQL = """
+      UPDATE crm.notification_outbox
+      SET status = 'PENDING', claimed_by = NULL
+      WHERE status = 'CLAIMED' AND claimed_at < NOW(3) - INTERVAL :lease SECOND
+    """;
+
+    private static final String PURGE_SQL = """
+      DELETE FROM crm.notification_outbox
+      WHERE status = 'SENT' AND sent_at < NOW(3) - INTERVAL :days DAY
+      LIMIT 1000
+    """;
+
+    private record Row(long id, PushAudience audience, PushMessage message, int attempts) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final PushDispatcher dispatcher;
+    private final ObjectMapper om;
+
+    @Value("${app.push.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.push.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.push.outbox.backoff-ms:30000}")
+    private long backoffMs;
+
+    @Value("${app.push.outbox.lease-seconds:600}")
+    private int leaseSeconds;
+
+    @Value("${app.push.outbox.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${app.push.outbox.node-id:}")
+    private String nodeId;
+
+    private ExecutorService executor;
+    private final AtomicBoolean requested = new AtomicBoolean();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        if (nodeId == null || nodeId.isBlank()) nodeId = defaultNodeId();
+        executor = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("push-outbox-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Wake the relay (coalesced: at most one drain running, one more queued). */
+    public void nudge() {
+        requested.set(true);
+        if (running.compareAndSet(false, true)) executor.execute(this::drainLoop);
+    }
+
+    @Scheduled(fixedDelayString = "${app.push.outbox.poll-ms:15000}",
+               initialDelayString = "${app.push.outbox.poll-ms:15000}")
+    public void poll() {
+        try {
+            MapSqlParameterSource p = new MapSqlParameterSource()
+                    .addValue("lease", leaseSeconds)
+                    .addValue("days", retentionDays);
+            int released = jdbc.update(RELEASE_EXPIRED_SQL, p);
+            if (released > 0) log.warn("Notification outbox: {} expired claims released", released);
+            jdbc.update(PURGE_SQL, p);
+        } catch (Exception e) {
+            log.error("Notification outbox: maintenance failed: {}", e.getMessage(), e);
+        }
+        nudge();
+    }
+
+    private void drainLoop() {
+        try {
+            while (requested.getAndSet(false)) drain();
+        } catch (Exception e) {
+            log.error("Notification outbox: drain failed: {}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+        // a nudge that arrived between the last drain and running = false
+        if (requested.get() && running.compareAndSet(false, true)) executor.execute(this::drainLoop);
+    }
+
+    private void drain() {
+        List<Row> claimed;
+        do {
+            claimed = tx.execute(status -> claim());
+            for (Row row : claimed) {
+                dispatcher.enqueue(row.audience(), row.message(), job -> complete(row, job));
+            }
+            if (!claimed.isEmpty()) log.debug("Notification outbox: {} rows dispatched by {}", claimed.size(), nodeId);
+        } while (claimed.size() == batchSize);
+    }
+
+    private List<Row> claim() {
+        List<Row> rows = jdbc.query(CLAIM_SQL, new MapSqlParameterSource("limit", batchSize), (rs, i) -> {
+            String role = rs.getString("audience_role");
+            Object premium = rs.getObject("audience_premium");
+            PushAudience audience = new PushAudience(
+                    PushAudience.Kind.valueOf(rs.getString("audience_kind")),
+                    rs.getString("audience_user_id"),
+                    role != null ? UserRole.valueOf(role) : null,
+                    premium != null ? rs.getBoolean("audience_premium") : null,
+                    null);
+            return new Row(rs.getLong("id"), audience,
+                    new PushMessage(rs.getString("title"), rs.getString("body"), data(rs.getString("data"))),
+                    rs.getInt("attempts"));
+        });
+        if (!rows.isEmpty()) {
+            jdbc.update(MARK_CLAIMED_SQL, new MapSqlParameterSource()
+                    .addValue("node", nodeId)
+                    .addValue("ids", rows.stream().map(Row::id).toList()));
+        }
+        return rows;
+    }
+
+    private void complete(Row row, PushJob job) {
+        try {
+            if (job.getStatus() == PushJob.Status.DONE) {
+                jdbc.update(MARK_SENT_SQL, new MapSqlParameterSource()
+                        .addValue("id", row.id())
+                        .addValue("node", nodeId)
+                        .addValue("jobId", job.getId()));
+                return;
+            }
+            int attempts = row.attempts() + 1;
+            boolean giveUp = attempts >= maxAttempts;
+            long cap = backoffMs << Math.min(attempts - 1, 10);
+            jdbc.update(MARK_FAILED_SQL, new MapSqlParameterSource()
+                    .addValue("id", row.id())
+                    .addValue("node", nodeId)
+                    .addValue("jobId", job.getId())
+                    .addValue("status", giveUp ? "FAILED" : "PENDING")
+                    .addValue("error", truncate(job.getError()))
+                    .addValue("delayMs", giveUp ? 0 : cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1)));
+            log.warn("Notification outbox: row {} failed (attempt {}{}): {}",
+                    row.id(), attempts, giveUp ? ", giving up" : "", job.getError());
+        } catch (Exception e) {
+            // the row stays CLAIMED and is released after the lease
+            log.error("Notification outbox: could not update row {}: {}", row.id(), e.getMessage());
+        }
+    }
+
+    private Map<String, String> data(String json) {
+        if (json == null || json.isBlank()) return Map.of();
+        try {
+            return om.readValue(json, new TypeReference<Map<String, String>>() {});
+        } catch (Exception e) {
+            log.warn("Notification outbox: unreadable data {}: {}", json, e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private static String truncate(String s) {
+        return s == null || s.length() <= 500 ? s : s.substring(0, 500);
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + ":" + ProcessHandle.current().pid();
+    }
+}
@@ -1,132 +1,261 @@
 package rotld.apscrm.api.v1.notification.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import rotld.apscrm.api.v1.logopedy.entities.Profile;
-import rotld.apscrm.api.v1.logopedy.repository.ProfileRepo;
-import rotld.apscrm.api.v1.user.repository.User;
-import rotld.apscrm.api.v1.user.repository.UserRepository;
+import rotld.apscrm.services.JobLockService;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.util.List;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+/**
+ * Scheduled reminders, set-based and staggered.
+ * <p>
+ * Each user gets a stable offset inside a window of {@code app.reminders.window-minutes} after the reminder's
+ * time: {@code CRC32(user id + reminder) mod window}, computed in SQL. A tick every minute sends only the
+ * slots that came due since the previous tick, so the sends (and the kids opening the app afterwards) are
+ * spread over the window instead of all landing at 19:00:00.
+ * <p>
+ * With {@code app.reminders.local-time} the reminder time is the user's local time ({@code users.time_zone},
+ * falling back to {@code app.reminders.default-zone}); each zone is handled as its own cohort.
+ * <p>
+ * Per tick, one projection query per due (reminder, zone) returns (token, first child name); tokens are grouped
+ * by identical payload and sent as one push job. Outbound rate is further capped by the dispatcher
+ * ({@code app.push.max-tokens-per-second}).
+ * <p>
+ * With several instances each tick is split into {@code app.reminders.shards} user shards, each run by exactly
+ * one node under a {@link JobLockService} lease. The shard's watermark is the end of the last interval it sent,
+ * so slots are neither skipped nor sent twice when the lease moves between nodes; after a full outage at most
+ * {@code app.reminders.max-catch-up-minutes} are replayed.
+ */
 @Service
 @EnableScheduling
 @RequiredArgsConstructor
 @Slf4j
 public class NotificationScheduler {
 
-    private final PushNotificationService pushNotificationService;
-    private final UserRepository userRepository;
-    private final ProfileRepo profileRepo;
+    private static final String ZONES_SQL = """
+      SELECT DISTINCT COALESCE(u.time_zone, :defaultZone) AS zone
+      FROM crm.users u
+      JOIN crm.user_fcm_token t ON t.user_id = u.id
+    """;
+
+    /* tokens of users with no activity since :before + their first child's name (by id), if any,
+       restricted to one zone, to the offset slots due in this tick and to one shard of the users */
+    private static final String COHORT_SQL = """
+      SELECT t.fcm_token AS token,
+             (SELECT p.name FROM crm.profile p WHERE p.user_id = u.id ORDER BY p.id LIMIT 1) AS child_name
+      FROM crm.users u
+      JOIN crm.user_fcm_token t ON t.user_id = u.id
+      WHERE (u.last_activity_at IS NULL OR u.last_activity_at < :before)
+        AND (:anyZone OR COALESCE(u.time_zone, :defaultZone) = :zone)
+        AND MOD(CRC32(CONCAT(u.id, ':', :reminder)), :window) BETWEEN :fromSlot AND :toSlot
+        AND MOD(CRC32(u.id), :shards) = :shard
+    """;
 
     /**
-     * Send daily practice reminder at 7 PM on weekdays (Monday-Friday)
-     * Cron: second minute hour day-of-month month day-of-week
-     * MON-FRI = Monday through Friday
+     * Practice reminder on weekdays (Monday-Friday) for users with no activity today;
+     * inactivity reminder daily for users inactive for 7+ days.
      */
-    @Scheduled(cron = "0 0 19 * * MON-FRI")
-    @Transactional(readOnly = true)
-    public void sendDailyPracticeReminder() {
-        if (!pushNotificationService.isInitialized()) {
-            log.warn("Firebase not initialized. Skipping daily practice reminder.");
-            return;
+    enum Reminder {
+        PRACTICE("practice", EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY), PushNotificationService::practiceReminder),
+        INACTIVITY("inactivity", EnumSet.allOf(DayOfWeek.class), PushNotificationService::inactivityReminder);
+
+        final String key;
+        final Set<DayOfWeek> days;
+        final Function<String, PushMessage> message;
+
+        Reminder(String key, Set<DayOfWeek> days, Function<String, PushMessage> message) {
+            this.key = key;
+            this.days = days;
+            this.message = message;
         }
+    }
 
-        log.info("Starting daily practice reminder job...");
+    public record ReminderStats(String reminder, long ticks, long jobs, long tokens, long lastTickTokens,
+                                long peakTickTokens, Instant lastSentAt) {}
 
-        try {
-            // Get start of today
-            LocalDateTime todayStart = LocalDate.now().atStartOfDay();
-
-            // Find users who haven't had activity today
-            List<User> inactiveUsers = userRepository.findUsersWithNoActivityToday(todayStart);
-
-            log.info("Found {} users with no activity today", inactiveUsers.size());
-
-            for (User user : inactiveUsers) {
-                try {
-                    // Get user's profiles to get child names
-                    List<Profile> profiles = profileRepo.findAllByUserId(user.getId());
-                    
-                    if (profiles.isEmpty()) {
-                        // No profiles, send generic message
-                        pushNotificationService.sendToUser(
-                                user.getId(),
-                                "E timpul pentru practică! 📚",
-                                "Nu ai exersat astăzi. Doar 5 minute pot face diferența!",
-                                java.util.Map.of("type", "practice_reminder")
-                        );
-                    } else {
-                        // Use first profile's name
-                        String childName = profiles.get(0).getName();
-                        pushNotificationService.sendPracticeReminder(user.getId(), childName);
-                    }
-                } catch (Exception e) {
-                    log.error("Failed to send practice reminder to user {}: {}", user.getId(), e.getMessage());
-                }
-            }
+    private static final class Counters {
+        final AtomicLong ticks = new AtomicLong();
+        final AtomicLong jobs = new AtomicLong();
+        final AtomicLong tokens = new AtomicLong();
+        final AtomicLong lastTickTokens = new AtomicLong();
+        final AtomicLong peakTickTokens = new AtomicLong();
+        volatile Instant lastSentAt;
+    }
+
+    private static final String JOB = "push-reminders";
+
+    private final PushNotificationService pushNotificationService;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final JobLockService jobLock;
+
+    @Value("${app.reminders.tick-ms:60000}")
+    private long tickMs;
+
+    @Value("${app.reminders.shards:4}")
+    private int shards;
+
+    @Value("${app.reminders.max-catch-up-minutes:10}")
+    private int maxCatchUpMinutes;
+
+    @Value("${app.reminders.practice-time:19:00}")
+    private String practiceTimeValue;
+
+    @Value("${app.reminders.inactivity-time:10:00}")
+    private String inactivityTimeValue;
+
+    @Value("${app.reminders.inactivity-days:7}")
+    private int inactivityDays;
+
+    @Value("${app.reminders.window-minutes:60}")
+    private int windowMinutes;
+
+    @Value("${app.reminders.local-time:true}")
+    private boolean localTime;
+
+    @Value("${app.reminders.default-zone:Europe/Bucharest}")
+    private String defaultZoneValue;
 
-            log.info("Daily practice reminder job completed");
+    private final Map<Reminder, Counters> counters = new ConcurrentHashMap<>();
+    private LocalTime practiceTime;
+    private LocalTime inactivityTime;
+    private ZoneId defaultZone;
+
+    @PostConstruct
+    void init() {
+        practiceTime = LocalTime.parse(practiceTimeValue);
+        inactivityTime = LocalTime.parse(inactivityTimeValue);
+        defaultZone = ZoneId.of(defaultZoneValue);
+        windowMinutes = Math.clamp(windowMinutes, 1, 12 * 60);
+        for (Reminder r : Reminder.values()) counters.put(r, new Counters());
+    }
+
+    @Scheduled(fixedDelayString = "${app.reminders.tick-ms:60000}", initialDelayString = "${app.reminders.tick-ms:60000}")
+    public void tick() {
+        if (!pushNotificationService.isInitialized()) {
+            log.warn("Firebase not initialized. Skipping reminders.");
+            return;
+        }
+        try {
+            jobLock.runSharded(JOB, shards, Duration.ofMinutes(5), null, this::tick);
         } catch (Exception e) {
-            log.error("Error in daily practice reminder job: {}", e.getMessage(), e);
+            log.error("Error in reminder tick: {}", e.getMessage(), e);
         }
     }
 
     /**
-     * Send inactivity reminder at 10 AM daily for users inactive for 7+ days
+     * One shard of a tick. The interval (from, now] starts at the shard's watermark, so whichever node holds the
+     * lease continues exactly where the previous one stopped; a failed tick is retried from the same point.
      */
-    @Scheduled(cron = "0 0 10 * * *")
-    @Transactional(readOnly = true)
-    public void sendInactivityReminder() {
-        if (!pushNotificationService.isInitialized()) {
-            log.warn("Firebase not initialized. Skipping inactivity reminder.");
-            return;
+    private void tick(JobLockService.Lease lease) {
+        Instant now = lease.acquiredAt();
+        Instant earliest = now.minus(Duration.ofMinutes(maxCatchUpMinutes));
+        Instant from = lease.lastCompletedAt() == null
+                ? now.minusMillis(tickMs)
+                : (lease.lastCompletedAt().isBefore(earliest) ? earliest : lease.lastCompletedAt());
+
+        List<ZoneId> zones = zones();
+        for (Reminder r : Reminder.values()) {
+            long tickTokens = 0;
+            for (ZoneId zone : zones) tickTokens += due(r, zone, lease, from, now);
+            Counters c = counters.get(r);
+            c.ticks.incrementAndGet();
+            c.lastTickTokens.set(tickTokens);
+            c.peakTickTokens.accumulateAndGet(tickTokens, Math::max);
         }
+    }
 
-        log.info("Starting inactivity reminder job...");
+    public List<ReminderStats> stats() {
+        return Arrays.stream(Reminder.values()).map(r -> {
+            Counters c = counters.get(r);
+            return new ReminderStats(r.key, c.ticks.get(), c.jobs.get(), c.tokens.get(),
+                    c.lastTickTokens.get(), c.peakTickTokens.get(), c.lastSentAt);
+        }).toList();
+    }
 
-        try {
-            // Calculate cutoff date (7 days ago)
-            LocalDateTime cutoffDate = LocalDateTime.now().minusDays(7);
-
-            // Find users who have been inactive for 7+ days
-            List<User> inactiveUsers = userRepository.findUsersInactiveFor(cutoffDate);
-
-            log.info("Found {} users inactive for 7+ days", inactiveUsers.size());
-
-            for (User user : inactiveUsers) {
-                try {
-                    // Get user's profiles to get child names
-                    List<Profile> profiles = profileRepo.findAllByUserId(user.getId());
-                    
-                    if (profiles.isEmpty()) {
-                        // No profiles, send generic message
-                        pushNotificationService.sendToUser(
-                                user.getId(),
-                                "Ne este dor de tine! 💙",
-                                "Continuă aventura logopedică. Progresul vine cu practică constantă!",
-                                java.util.Map.of("type", "inactivity_reminder")
-                        );
-                    } else {
-                        // Use first profile's name
-                        String childName = profiles.get(0).getName();
-                        pushNotificationService.sendInactivityReminder(user.getId(), childName);
-                    }
-                } catch (Exception e) {
-                    log.error("Failed to send inactivity reminder to user {}: {}", user.getId(), e.getMessage());
-                }
-            }
+    /** Sends the slots of {@code r} in {@code zone} whose time falls in (from, now]; returns the tokens queued. */
+    private long due(Reminder r, ZoneId zone, JobLockService.Lease lease, Instant from, Instant now) {
+        LocalTime at = r == Reminder.PRACTICE ? practiceTime : inactivityTime;
+        long queued = 0;
+        // the window may start yesterday (local) and still be open after midnight
+        LocalDate today = now.atZone(zone).toLocalDate();
+        for (LocalDate day = today.minusDays(1); !day.isAfter(today); day = day.plusDays(1)) {
+            if (!r.days.contains(day.getDayOfWeek())) continue;
+            Instant start = day.atTime(at).atZone(zone).toInstant();
+            // slot s fires at start + s minutes; due if that is in (from, now]
+            long fromSlot = Math.max(0, Math.floorDiv(Duration.between(start, from).toSeconds(), 60) + 1);
+            long toSlot = Math.min(windowMinutes - 1, Math.floorDiv(Duration.between(start, now).toSeconds(), 60));
+            if (fromSlot > toSlot) continue;
 
-            log.info("Inactivity reminder job completed");
-        } catch (Exception e) {
-            log.error("Error in inactivity reminder job: {}", e.getMessage(), e);
+            LocalDateTime before = r == Reminder.PRACTICE
+                    ? LocalDateTime.ofInstant(day.atStartOfDay(zone).toInstant(), ZoneId.systemDefault())
+                    : LocalDateTime.now().minusDays(inactivityDays);
+            queued += send(r, zone, lease, before, fromSlot, toSlot);
         }
+        return queued;
+    }
+
+    private long send(Reminder r, ZoneId zone, JobLockService.Lease lease, LocalDateTime before, long fromSlot, long toSlot) {
+        Map<String, List<String>> byChild = new HashMap<>();
+        List<String> generic = new ArrayList<>();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("before", before)
+                .addValue("anyZone", !localTime)
+                .addValue("zone", zone.getId())
+                .addValue("defaultZone", defaultZone.getId())
+                .addValue("reminder", r.key)
+                .addValue("window", windowMinutes)
+                .addValue("fromSlot", fromSlot)
+                .addValue("toSlot", toSlot)
+                .addValue("shards", lease.shards())
+                .addValue("shard", lease.shard());
+        jdbc.query(COHORT_SQL, params, (RowCallbackHandler) rs -> {
+            String child = rs.getString("child_name");
+            (child != null ? byChild.computeIfAbsent(child, k -> new ArrayList<>()) : generic).add(rs.getString("token"));
+        });
+
+        Map<PushMessage, List<String>> groups = new HashMap<>();
+        if (!generic.isEmpty()) groups.put(r.message.apply(null), generic);
+        byChild.forEach((child, tokens) -> groups.merge(r.message.apply(child), tokens, (a, b) -> {
+            a.addAll(b);
+            return a;
+        }));
+        int tokens = groups.values().stream().mapToInt(List::size).sum();
+        if (tokens == 0) return 0;
+
+        String label = r.key + " reminder " + zone.getId() + " slots " + fromSlot + "-" + toSlot
+                + (lease.shards() > 1 ? " shard " + lease.shard() + "/" + lease.shards() : "");
+        PushJob job = pushNotificationService.sendToCohort(label, groups);
+        Counters c = counters.get(r);
+        c.jobs.incrementAndGet();
+        c.tokens.addAndGet(tokens);
+        c.lastSentAt = Instant.now();
+        log.info("{}: {} tokens in {} distinct messages queued as job {}", label, tokens, groups.size(), job.getId());
+        return tokens;
+    }
+
+    private List<ZoneId> zones() {
+        if (!localTime) return List.of(defaultZone);
+        List<ZoneId> zones = new ArrayList<>();
+        jdbc.query(ZONES_SQL, new MapSqlParameterSource("defaultZone", defaultZone.getId()), (RowCallbackHandler) rs -> {
+            String id = rs.getString("zone");
+            try {
+                zones.add(ZoneId.of(id));
+            } catch (DateTimeException e) {
+                log.warn("Unknown time zone in users.time_zone: {}", id);
+            }
+        });
+        return zones;
     }
 }
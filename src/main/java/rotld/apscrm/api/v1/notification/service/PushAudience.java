@@ -0,0 +1,45 @@
+package rotld.apscrm.api.v1.notification.service;
+
+import rotld.apscrm.api.v1.user.dto.UserRole;
+
+/**
+ * Who a notification intent goes to. Tokens are resolved by the dispatcher when the job runs,
+ * not on the caller's thread – except for {@link Kind#COHORT}, where the caller already grouped
+ * the tokens per message (scheduled reminders).
+ */
+public record PushAudience(Kind kind, String userId, UserRole role, Boolean premium, String label) {
+
+    public enum Kind { USER, ALL, PREMIUM, NON_PREMIUM, ROLE, COHORT }
+
+    public static PushAudience user(String userId) {
+        return new PushAudience(Kind.USER, userId, null, null, null);
+    }
+
+    public static PushAudience all() {
+        return new PushAudience(Kind.ALL, null, null, null, null);
+    }
+
+    public static PushAudience premium(boolean premium) {
+        return new PushAudience(premium ? Kind.PREMIUM : Kind.NON_PREMIUM, null, null, null, null);
+    }
+
+    /** @param premium optional filter on premium status */
+    public static PushAudience role(UserRole role, Boolean premium) {
+        return new PushAudience(Kind.ROLE, null, role, premium, null);
+    }
+
+    /** Tokens supplied with the job; {@code label} only names it in logs and progress. */
+    public static PushAudience cohort(String label) {
+        return new PushAudience(Kind.COHORT, null, null, null, label);
+    }
+
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case USER -> "user " + userId;
+            case ROLE -> "role " + role + (premium != null ? " premium=" + premium : "");
+            case COHORT -> "cohort " + label;
+            default -> kind.name().toLowerCase();
+        };
+    }
+}
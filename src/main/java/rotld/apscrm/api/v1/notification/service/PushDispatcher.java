@@ -0,0 +1,380 @@
+package rotld.apscrm.api.v1.notification.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.SendResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import rotld.apscrm.api.v1.notification.repository.UserFcmTokenRepo;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous push pipeline: callers enqueue an intent (audience + message) and get a {@link PushJob} back
+ * immediately. A bounded worker pool resolves the tokens and splits them into multicasts of 500.
+ * <p>
+ * Multicasts go out with {@code sendEachForMulticastAsync}, so no worker blocks on FCM: up to
+ * {@code app.push.max-in-flight} are outstanding at once, across all jobs. The limit is adaptive
+ * ({@link AdaptiveLimiter}) – halved on QUOTA_EXCEEDED, grown back by one per window of successes – so a large
+ * broadcast runs at whatever throughput the project quota allows instead of one round trip per batch.
+ * {@code app.push.max-tokens-per-second} adds an optional token bucket on delivered messages on top.
+ * <p>
+ * A batch that throws (network, 5xx) is retried as a whole; inside a response only the tokens that failed
+ * with a transient code are retried. Retries wait a full-jitter exponential backoff on the scheduler and then
+ * queue for a permit like any other multicast. UNREGISTERED / INVALID_ARGUMENT tokens are handed to
+ * {@link FcmTokenCleaner}, which deletes them in chunks off the send path.
+ * <p>
+ * Intents enqueued inside a transaction are dispatched only after commit (and dropped on rollback).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PushDispatcher {
+
+    private static final Set<MessagingErrorCode> RETRYABLE = EnumSet.of(
+            MessagingErrorCode.UNAVAILABLE, MessagingErrorCode.INTERNAL, MessagingErrorCode.QUOTA_EXCEEDED);
+
+    private final FcmSender fcmSender;
+    private final UserFcmTokenRepo fcmTokenRepo;
+    private final FcmTokenCleaner tokenCleaner;
+
+    @Value("${app.push.workers:4}")
+    private int workers;
+
+    @Value("${app.push.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${app.push.backoff-ms:1000}")
+    private long backoffMs;
+
+    @Value("${app.push.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    @Value("${app.push.max-in-flight:16}")
+    private int maxInFlight;
+
+    @Value("${app.push.min-in-flight:1}")
+    private int minInFlight;
+
+    @Value("${app.push.throttle-cooldown-ms:2000}")
+    private long throttleCooldownMs;
+
+    @Value("${app.push.max-tokens-per-second:0}")
+    private int maxTokensPerSecond;
+
+    @Value("${app.push.job-history:200}")
+    private int jobHistory;
+
+    private ScheduledThreadPoolExecutor executor;
+    private AdaptiveLimiter limiter;
+    private TokenBucket rate;
+    private final Deque<Send> ready = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean pumpScheduled = new AtomicBoolean();
+    private final AtomicLong rateLimitWaits = new AtomicLong();
+
+    private final Map<String, PushJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PushJob> eldest) {
+            return size() > jobHistory && eldest.getValue().isFinished();
+        }
+    });
+
+    @PostConstruct
+    void init() {
+        executor = new ScheduledThreadPoolExecutor(workers, Thread.ofPlatform().name("push-", 0).daemon().factory());
+        executor.setRemoveOnCancelPolicy(true);
+        limiter = new AdaptiveLimiter(minInFlight, maxInFlight, throttleCooldownMs);
+        rate = maxTokensPerSecond > 0 ? new TokenBucket(maxTokensPerSecond) : null;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public PushJob enqueue(PushAudience audience, PushMessage message) {
+        return enqueue(audience, message, null);
+    }
+
+    /** @param onFinish called once when the job reaches DONE / FAILED (on a worker thread) */
+    public PushJob enqueue(PushAudience audience, PushMessage message, Consumer<PushJob> onFinish) {
+        PushJob job = new PushJob(UUID.randomUUID().toString(), audience, message, onFinish);
+        jobs.put(job.getId(), job);
+
+        Runnable dispatch = () -> submit(() -> run(job), job);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch.run();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) job.fail("Transaction rolled back");
+                }
+            });
+        } else {
+            dispatch.run();
+        }
+        return job;
+    }
+
+    /**
+     * One job for a pre-grouped cohort: each distinct payload goes to its own tokens, in multicasts of 500,
+     * all sharing the same in-flight limit.
+     */
+    public PushJob enqueueCohort(String label, Map<PushMessage, List<String>> groups) {
+        PushMessage first = groups.isEmpty() ? new PushMessage(label, "", Map.of()) : groups.keySet().iterator().next();
+        PushJob job = new PushJob(UUID.randomUUID().toString(), PushAudience.cohort(label), first, Map.copyOf(groups), null);
+        jobs.put(job.getId(), job);
+        submit(() -> run(job), job);
+        return job;
+    }
+
+    public Optional<PushJob.Progress> progress(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(PushJob::progress);
+    }
+
+    private void run(PushJob job) {
+        if (!fcmSender.isInitialized()) {
+            log.warn("Firebase not initialized. Push job {} ({}) dropped.", job.getId(), job.audience());
+            job.fail("Firebase not initialized");
+            return;
+        }
+
+        Map<PushMessage, List<String>> groups = job.groups() != null
+                ? job.groups()
+                : Map.of(job.message(), resolve(job.audience()));
+        int batchSize = FcmSender.MAX_TOKENS_PER_MULTICAST;
+        int tokens = 0;
+        int batches = 0;
+        for (List<String> group : groups.values()) {
+            tokens += group.size();
+            batches += (group.size() + batchSize - 1) / batchSize;
+        }
+        job.start(tokens, batches);
+        if (batches == 0) {
+            log.info("No FCM tokens found for {}", job.audience());
+            return;
+        }
+
+        log.info("Push job {}: {} tokens for {} in {} batches", job.getId(), tokens, job.audience(), batches);
+        groups.forEach((message, group) -> {
+            for (int i = 0; i < group.size(); i += batchSize) {
+                List<String> batch = List.copyOf(group.subList(i, Math.min(i + batchSize, group.size())));
+                offer(new Send(job, message, batch, 1));
+            }
+        });
+    }
+
+    private List<String> resolve(PushAudience audience) {
+        return switch (audience.kind()) {
+            case USER -> fcmTokenRepo.findTokensByUserId(audience.userId());
+            case ALL -> fcmTokenRepo.findAllTokens();
+            case PREMIUM -> fcmTokenRepo.findTokensForPremiumUsers();
+            case NON_PREMIUM -> fcmTokenRepo.findTokensForNonPremiumUsers();
+            case ROLE -> audience.premium() != null
+                    ? fcmTokenRepo.findTokensByRoleAndPremium(audience.role(), audience.premium())
+                    : fcmTokenRepo.findTokensByUserRole(audience.role());
+            case COHORT -> List.of();
+        };
+    }
+
+    /** A multicast waiting for a permit: the whole batch on the first attempt, only the transient failures after. */
+    private record Send(PushJob job, PushMessage message, List<String> tokens, int attempt) {}
+
+    private void offer(Send send) {
+        ready.add(send);
+        pump();
+    }
+
+    /** Start queued multicasts while the limiter allows; called on every enqueue and every completion. */
+    private void pump() {
+        while (limiter.tryAcquire()) {
+            Send send = ready.poll();
+            if (send == null) {
+                limiter.onDropped();
+                // an offer() racing with us found no permit; its pump may have already given up
+                if (ready.isEmpty()) return;
+                continue;
+            }
+            long waitMs = rate != null ? rate.tryAcquire(send.tokens().size()) : 0;
+            if (waitMs > 0) {
+                ready.addFirst(send);
+                limiter.onDropped();
+                rateLimitWaits.incrementAndGet();
+                schedulePump(waitMs);
+                return;
+            }
+            start(send);
+        }
+    }
+
+    /** Rate limit hit: one delayed pump, however many threads noticed. */
+    private void schedulePump(long delayMs) {
+        if (!pumpScheduled.compareAndSet(false, true)) return;
+        try {
+            executor.schedule(() -> {
+                pumpScheduled.set(false);
+                pump();
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pumpScheduled.set(false);
+        }
+    }
+
+    public record Stats(int inFlightLimit, int inFlight, int queuedBatches, long rateLimitWaits, int maxTokensPerSecond) {}
+
+    public Stats stats() {
+        return new Stats(limiter.limit(), limiter.inFlight(), ready.size(), rateLimitWaits.get(), maxTokensPerSecond);
+    }
+
+    private void start(Send send) {
+        ApiFuture<BatchResponse> future;
+        try {
+            future = fcmSender.sendAsync(send.tokens(), send.message());
+        } catch (RuntimeException e) {
+            limiter.onDropped();
+            log.error("Push job {}: multicast of {} failed: {}", send.job().getId(), send.tokens().size(), e.getMessage(), e);
+            send.job().failed(send.tokens().size());
+            send.job().batchDone();
+            return;
+        }
+        ApiFutures.addCallback(future, new ApiFutureCallback<>() {
+            @Override
+            public void onSuccess(BatchResponse response) {
+                try {
+                    handle(send, response);
+                } finally {
+                    pump();
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                try {
+                    handle(send, t);
+                } finally {
+                    pump();
+                }
+            }
+        }, executor);
+    }
+
+    /** Transient failures go back on the scheduler; the batch counts as done after its last attempt. */
+    private void handle(Send send, BatchResponse response) {
+        PushJob job = send.job();
+        List<String> again = new ArrayList<>();
+        boolean throttled = false;
+        int invalid = 0;
+        List<SendResponse> responses = response.getResponses();
+        for (int i = 0; i < responses.size(); i++) {
+            SendResponse r = responses.get(i);
+            if (r.isSuccessful()) {
+                job.sent(1);
+                continue;
+            }
+            String token = send.tokens().get(i);
+            FirebaseMessagingException ex = r.getException();
+            MessagingErrorCode code = ex != null ? ex.getMessagingErrorCode() : null;
+            throttled |= code == MessagingErrorCode.QUOTA_EXCEEDED;
+            if (FcmTokenCleaner.isDead(code)) {
+                tokenCleaner.markDead(token);
+                invalid++;
+            } else if (code != null && RETRYABLE.contains(code) && send.attempt() < maxAttempts) {
+                again.add(token);
+            } else {
+                job.failed(1);
+            }
+        }
+        release(throttled);
+        if (invalid > 0) {
+            log.info("Push job {}: {} invalid FCM tokens queued for removal", job.getId(), invalid);
+            job.invalid(invalid);
+            job.failed(invalid);
+        }
+
+        if (again.isEmpty()) {
+            job.batchDone();
+        } else {
+            retry(send, again);
+        }
+    }
+
+    private void handle(Send send, Throwable t) {
+        PushJob job = send.job();
+        Throwable cause = t instanceof ExecutionException && t.getCause() != null ? t.getCause() : t;
+        FirebaseMessagingException e = cause instanceof FirebaseMessagingException fme ? fme : null;
+        release(e != null && e.getMessagingErrorCode() == MessagingErrorCode.QUOTA_EXCEEDED);
+
+        if (e != null && isRetryable(e) && send.attempt() < maxAttempts) {
+            log.warn("Push job {}: multicast of {} failed (attempt {}): {}", job.getId(), send.tokens().size(), send.attempt(), e.getMessage());
+            retry(send, send.tokens());
+        } else {
+            log.error("Push job {}: multicast of {} failed: {}", job.getId(), send.tokens().size(), cause.getMessage());
+            job.failed(send.tokens().size());
+            job.batchDone();
+        }
+    }
+
+    private void release(boolean throttled) {
+        if (!throttled) {
+            limiter.onSuccess();
+        } else if (limiter.onThrottled()) {
+            log.warn("FCM quota exceeded: concurrent multicasts lowered to {}", limiter.limit());
+        }
+    }
+
+    private void retry(Send send, List<String> tokens) {
+        send.job().retried();
+        // full jitter: uniform in [0, min(max, base * 2^(attempt-1))]
+        long cap = Math.min(maxBackoffMs, backoffMs << Math.min(send.attempt() - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        try {
+            executor.schedule(() -> offer(new Send(send.job(), send.message(), tokens, send.attempt() + 1)), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            send.job().failed(tokens.size());
+            send.job().batchDone();
+        }
+    }
+
+    private void submit(Runnable task, PushJob job) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Push job {} failed: {}", job.getId(), e.getMessage(), e);
+                    job.fail(e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            job.fail("Dispatcher stopped");
+        }
+    }
+
+    private static boolean isRetryable(FirebaseMessagingException e) {
+        MessagingErrorCode code = e.getMessagingErrorCode();
+        return code == null || RETRYABLE.contains(code);
+    }
+}
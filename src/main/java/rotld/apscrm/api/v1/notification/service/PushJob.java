@@ -0,0 +1,104 @@
+package rotld.apscrm.api.v1.notification.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * One enqueued notification intent and its live progress counters.
+ * Counters are updated by the dispatcher's worker threads; {@link #progress()} is a consistent-enough snapshot.
+ */
+public final class PushJob {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    private final String id;
+    private final PushAudience audience;
+    private final PushMessage message;
+    private final Map<PushMessage, List<String>> groups;
+    private final Instant createdAt = Instant.now();
+
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.QUEUED);
+    private final AtomicInteger tokens = new AtomicInteger();
+    private final AtomicInteger batchesTotal = new AtomicInteger();
+    private final AtomicInteger batchesDone = new AtomicInteger();
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger invalidTokens = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final Consumer<PushJob> onFinish;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    PushJob(String id, PushAudience audience, PushMessage message, Consumer<PushJob> onFinish) {
+        this(id, audience, message, null, onFinish);
+    }
+
+    /** @param groups tokens per distinct payload, for {@link PushAudience.Kind#COHORT} jobs */
+    PushJob(String id, PushAudience audience, PushMessage message, Map<PushMessage, List<String>> groups,
+            Consumer<PushJob> onFinish) {
+        this.id = id;
+        this.audience = audience;
+        this.message = message;
+        this.groups = groups;
+        this.onFinish = onFinish;
+    }
+
+    public record Progress(String id, String audience, String title, Status status, int tokens,
+                           int batchesTotal, int batchesDone, int sent, int failed, int invalidTokens,
+                           int retries, Instant createdAt, Instant finishedAt, String error) {}
+
+    public Progress progress() {
+        return new Progress(id, audience.toString(), message.title(), status.get(), tokens.get(),
+                batchesTotal.get(), batchesDone.get(), sent.get(), failed.get(), invalidTokens.get(),
+                retries.get(), createdAt, finishedAt, error);
+    }
+
+    public String getId() { return id; }
+    PushAudience audience() { return audience; }
+    PushMessage message() { return message; }
+    Map<PushMessage, List<String>> groups() { return groups; }
+
+    void start(int tokenCount, int batches) {
+        tokens.set(tokenCount);
+        batchesTotal.set(batches);
+        if (batches == 0) finish(Status.DONE, null);
+        else status.compareAndSet(Status.QUEUED, Status.RUNNING);
+    }
+
+    void sent(int n) { sent.addAndGet(n); }
+    void failed(int n) { failed.addAndGet(n); }
+    void invalid(int n) { invalidTokens.addAndGet(n); }
+    void retried() { retries.incrementAndGet(); }
+
+    void batchDone() {
+        if (batchesDone.incrementAndGet() == batchesTotal.get()) finish(Status.DONE, null);
+    }
+
+    void fail(String message) {
+        finish(Status.FAILED, message);
+    }
+
+    /** Only the first transition to DONE / FAILED counts; the listener runs once, on the finishing thread. */
+    private void finish(Status to, String message) {
+        Status cur;
+        do {
+            cur = status.get();
+            if (cur == Status.DONE || cur == Status.FAILED) return;
+        } while (!status.compareAndSet(cur, to));
+        error = message;
+        finishedAt = Instant.now();
+        if (onFinish != null) onFinish.accept(this);
+    }
+
+    public Status getStatus() { return status.get(); }
+    public String getError() { return error; }
+
+    boolean isFinished() {
+        Status s = status.get();
+        return s == Status.DONE || s == Status.FAILED;
+    }
+}
@@ -0,0 +1,7 @@
+package rotld.apscrm.api.v1.notification.service;
+
+import java.util.Map;
+
+/** Notification payload: the same title / body / data goes to every token of an intent. */
+public record PushMessage(String title, String body, Map<String, String> data) {
+}
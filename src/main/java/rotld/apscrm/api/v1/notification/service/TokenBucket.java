@@ -0,0 +1,33 @@
+package rotld.apscrm.api.v1.notification.service;
+
+/**
+ * Token bucket on delivered messages (one token per FCM token in a multicast). Capacity is one second of
+ * rate, but never less than a full multicast, so a 500-token batch can always pass eventually.
+ */
+final class TokenBucket {
+
+    private final double perNano;
+    private final double capacity;
+
+    private double available;
+    private long last;
+
+    TokenBucket(int perSecond) {
+        this.perNano = perSecond / 1e9;
+        this.capacity = Math.max(perSecond, FcmSender.MAX_TOKENS_PER_MULTICAST);
+        this.available = capacity;
+        this.last = System.nanoTime();
+    }
+
+    /** @return 0 if {@code n} tokens were taken, otherwise the millis to wait before asking again */
+    synchronized long tryAcquire(int n) {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - last) * perNano);
+        last = now;
+        if (available >= n) {
+            available -= n;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((n - available) / perNano / 1e6));
+    }
+}
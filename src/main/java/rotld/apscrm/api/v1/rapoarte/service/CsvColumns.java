@@ -0,0 +1,100 @@
+package rotld.apscrm.api.v1.rapoarte.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coloanele CSV ale unui tip, rezolvate o singură dată per clasă: numele (componente de record sau
+ * câmpuri declarate) + câte un {@link MethodHandle} (Object)Object pentru fiecare, în loc de reflection per celulă.
+ */
+final class CsvColumns<T> {
+
+    private static final ClassValue<CsvColumns<?>> CACHE = new ClassValue<>() {
+        @Override
+        protected CsvColumns<?> computeValue(Class<?> type) {
+            return build(type);
+        }
+    };
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private final String[] names;
+    private final MethodHandle[] getters;
+
+    private CsvColumns(String[] names, MethodHandle[] getters) {
+        this.names = names;
+        this.getters = getters;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> CsvColumns<T> of(Class<T> type) {
+        return (CsvColumns<T>) CACHE.get(type);
+    }
+
+    void writeHeader(Writer w) throws IOException {
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) w.write(',');
+            w.write(names[i]);
+        }
+        w.write('\n');
+    }
+
+    void writeRow(Writer w, T item) throws IOException {
+        for (int c = 0; c < getters.length; c++) {
+            if (c > 0) w.write(',');
+            Object val;
+            try {
+                val = (Object) getters[c].invokeExact((Object) item);
+            } catch (Throwable e) {
+                w.write("ERR");
+                continue;
+            }
+            writeEscaped(w, val);
+        }
+        w.write('\n');
+    }
+
+    private static void writeEscaped(Writer w, Object val) throws IOException {
+        if (val == null) return;
+        String str = val.toString();
+        if (str.indexOf(',') >= 0 || str.indexOf('"') >= 0 || str.indexOf('\n') >= 0 || str.indexOf('\r') >= 0) {
+            w.write('"');
+            w.write(str.replace("\"", "\"\""));
+            w.write('"');
+        } else {
+            w.write(str);
+        }
+    }
+
+    private static CsvColumns<?> build(Class<?> type) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<String> names = new ArrayList<>();
+        List<MethodHandle> getters = new ArrayList<>();
+        try {
+            if (type.isRecord()) {
+                for (RecordComponent rc : type.getRecordComponents()) {
+                    names.add(rc.getName());
+                    getters.add(lookup.unreflect(rc.getAccessor()).asType(GETTER));
+                }
+            } else {
+                for (Field f : type.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())) continue;
+                    f.setAccessible(true);
+                    names.add(f.getName());
+                    getters.add(lookup.unreflectGetter(f).asType(GETTER));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Nu pot citi coloanele pentru " + type.getName(), e);
+        }
+        return new CsvColumns<>(names.toArray(String[]::new), getters.toArray(MethodHandle[]::new));
+    }
+}
@@ -0,0 +1,240 @@
+package rotld.apscrm.api.v1.rapoarte.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import rotld.apscrm.api.v1.cause.repository.Cause;
+import rotld.apscrm.api.v1.cause.service.CauseService;
+import rotld.apscrm.api.v1.d177.dto.D177ResponseDto;
+import rotld.apscrm.api.v1.d177.service.D177Service;
+import rotld.apscrm.api.v1.f230.dto.F230ResponseDto;
+import rotld.apscrm.api.v1.f230.service.F230Service;
+import rotld.apscrm.api.v1.iban_beneficiari.dto.IbanBeneficiariResponseDto;
+import rotld.apscrm.api.v1.iban_beneficiari.service.IbanBeneficiariService;
+import rotld.apscrm.api.v1.sponsorizare.dto.SponsorizareResponseDto;
+import rotld.apscrm.api.v1.sponsorizare.service.SponsorizareService;
+import rotld.apscrm.api.v1.volunteer.dto.VolunteerResponseDto;
+import rotld.apscrm.api.v1.volunteer.service.VolunteerService;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export CSV în streaming, id descrescător, scris direct în output stream – memoria rămâne constantă indiferent
+ * de numărul de rânduri (fără plafonul de 9999). Tabelele simple se citesc în loturi keyset; F230, sponsorizare
+ * și 177 (subselect-uri EAV peste wp_postmeta) dintr-un singur query citit în streaming, ca tabela derivată să
+ * nu se reconstruiască la fiecare lot.
+ * <p>
+ * Bundle-ul ZIP scrie primul dataset direct în arhivă, pe thread-ul request-ului (descărcarea pornește imediat),
+ * în timp ce restul rulează în paralel – câte un thread per dataset – în fișiere temporare; acestea se adaugă
+ * în arhivă în ordinea în care se termină, deci durata e dată de cel mai lent dataset.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CsvExportService {
+
+    private final VolunteerService volunteerService;
+    private final SponsorizareService sponsorizareService;
+    private final IbanBeneficiariService ibanService;
+    private final F230Service f230Service;
+    private final D177Service d177Service;
+    private final CauseService causeService;
+
+    public static final List<String> DATASETS = List.of("voluntari", "sponsorizare", "iban", "f230", "d177", "cause");
+
+    @Value("${app.reports.export-batch-size:1000}")
+    private int batchSize;
+
+    /** 0 = câte un thread per dataset */
+    @Value("${app.reports.bundle-parallelism:0}")
+    private int bundleParallelism;
+
+    private ExecutorService bundleExecutor;
+
+    @PostConstruct
+    void init() {
+        int threads = bundleParallelism > 0 ? bundleParallelism : DATASETS.size();
+        bundleExecutor = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("report-bundle-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        bundleExecutor.shutdownNow();
+    }
+
+    /**
+     * @param type  tipul rândului (record sau DTO cu câmpuri) – dă antetul și coloanele
+     * @param rows  trimite toate rândurile, descrescător după id, consumatorului dat
+     */
+    private record Dataset<T>(Class<T> type, Consumer<Consumer<T>> rows) {}
+
+    /**
+     * Rândurile în loturi keyset: (beforeId, size) → următorul lot; {@code id} e cursorul pentru lotul următor.
+     * Doar pentru tabele / view-uri simple – un subselect s-ar reevalua complet la fiecare lot.
+     */
+    private <T> Consumer<Consumer<T>> keyset(BiFunction<Integer, Integer, List<T>> batch, Function<T, Integer> id) {
+        return sink -> {
+            Integer cursor = null;
+            while (true) {
+                List<T> rows = batch.apply(cursor, batchSize);
+                rows.forEach(sink);
+                if (rows.size() < batchSize) return;
+                cursor = id.apply(rows.get(rows.size() - 1));
+            }
+        };
+    }
+
+    /** Validează dataset-ul înainte să începem răspunsul (ca eroarea să fie încă un 400). */
+    public void checkDataset(String dataset) {
+        dataset(dataset);
+    }
+
+    public void export(String dataset, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        long rows = write(w, dataset(dataset));
+        w.flush();
+        log.info("Export CSV {}: {} rânduri în {} ms", dataset, rows, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Toate dataset-urile într-un singur ZIP (o intrare deflate per dataset). Headerele pleacă imediat;
+     * un dataset care eșuează apare ca {@code <dataset>.error.txt}, fără să strice restul arhivei.
+     */
+    public void exportBundle(OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        CompletionService<Path> done = new ExecutorCompletionService<>(bundleExecutor);
+        Map<Future<Path>, String> pending = new HashMap<>();
+        // fișierele temporare încă neșterse; un task care termină după ce am renunțat la bundle își șterge singur fișierul
+        Set<Path> temps = ConcurrentHashMap.newKeySet();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        String direct = DATASETS.getFirst();
+        for (String ds : DATASETS.subList(1, DATASETS.size())) {
+            pending.put(done.submit(() -> exportToTemp(ds, temps, abandoned)), ds);
+        }
+        out.flush();
+
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024), StandardCharsets.UTF_8);
+        try {
+            // primul dataset direct în arhivă: IOException = client deconectat (se propagă), RuntimeException = query-ul
+            zip.putNextEntry(new ZipEntry(direct + ".csv"));
+            try {
+                export(direct, zip);
+            } catch (RuntimeException e) {
+                zip.closeEntry();
+                writeError(zip, direct, e);
+            }
+            zip.closeEntry();
+
+            while (!pending.isEmpty()) {
+                Future<Path> f = done.take();
+                String ds = pending.remove(f);
+                Path tmp = null;
+                try {
+                    tmp = f.get();
+                    zip.putNextEntry(new ZipEntry(ds + ".csv"));
+                    Files.copy(tmp, zip);
+                } catch (ExecutionException e) {
+                    writeError(zip, ds, e.getCause());
+                } finally {
+                    zip.closeEntry();
+                    if (tmp != null) {
+                        Files.deleteIfExists(tmp);
+                        temps.remove(tmp);
+                    }
+                }
+            }
+            zip.finish();
+            zip.flush();
+            log.info("Export bundle: {} dataset-uri în {} ms", DATASETS.size(), System.currentTimeMillis() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export bundle întrerupt");
+        } finally {
+            // client deconectat / eroare: anulăm ce n-a pornit și ștergem ce s-a produs deja; întreruperea nu
+            // oprește JDBC-ul sau scrierea, deci task-urile care rulează încă se curăță singure (abandoned)
+            abandoned.set(true);
+            pending.keySet().forEach(f -> f.cancel(true));
+            temps.forEach(CsvExportService::deleteQuietly);
+        }
+    }
+
+    private static void writeError(ZipOutputStream zip, String dataset, Throwable e) throws IOException {
+        log.error("Export bundle: dataset {} a eșuat: {}", dataset, e.getMessage(), e);
+        zip.putNextEntry(new ZipEntry(dataset + ".error.txt"));
+        zip.write(String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path exportToTemp(String dataset, Set<Path> temps, AtomicBoolean abandoned) throws IOException {
+        Path tmp = Files.createTempFile("export-" + dataset + "-", ".csv");
+        temps.add(tmp);
+        try (OutputStream os = Files.newOutputStream(tmp)) {
+            export(dataset, os);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(tmp);
+            throw e;
+        }
+        if (abandoned.get() || Thread.currentThread().isInterrupted()) {
+            deleteQuietly(tmp);
+            throw new CancellationException("Export bundle abandonat");
+        }
+        return tmp;
+    }
+
+    private static void deleteQuietly(Path tmp) {
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            log.warn("Nu am putut șterge {}: {}", tmp, e.getMessage());
+        }
+    }
+
+    private <T> long write(Writer w, Dataset<T> ds) throws IOException {
+        CsvColumns<T> columns = CsvColumns.of(ds.type());
+        columns.writeHeader(w);
+
+        long[] rows = {0};
+        try {
+            ds.rows().accept(item -> {
+                try {
+                    columns.writeRow(w, item);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    private Dataset<?> dataset(String dataset) {
+        return switch (dataset) {
+            case "voluntari"    -> new Dataset<>(VolunteerResponseDto.class, keyset(volunteerService::exportBatch, VolunteerResponseDto::id));
+            case "sponsorizare" -> new Dataset<>(SponsorizareResponseDto.class, sponsorizareService::exportAll);
+            case "iban"         -> new Dataset<>(IbanBeneficiariResponseDto.class, keyset(ibanService::exportBatch, IbanBeneficiariResponseDto::getId));
+            case "f230"         -> new Dataset<>(F230ResponseDto.class, f230Service::exportAll);
+            case "d177"         -> new Dataset<>(D177ResponseDto.class, d177Service::exportAll);
+            case "cause"        -> new Dataset<>(Cause.class, keyset(causeService::exportBatch, Cause::getId));
+            default -> throw new IllegalArgumentException("Dataset necunoscut: " + dataset);
+        };
+    }
+}
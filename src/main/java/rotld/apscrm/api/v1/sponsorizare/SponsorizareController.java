@@ -7,8 +7,10 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import rotld.apscrm.api.v1.d177.repository.D177Settings;
-import rotld.apscrm.api.v1.d177.repository.D177SettingsRepository;
+import rotld.apscrm.api.v1.d177.dto.FlagsBulkRequest;
+import rotld.apscrm.api.v1.d177.dto.FlagsBulkResultDto;
+import rotld.apscrm.api.v1.d177.service.PostFlagsCache;
+import rotld.apscrm.api.v1.d177.service.PostFlagsService;
 import rotld.apscrm.api.v1.sponsorizare.dto.SponsorizareResponseDto;
 import rotld.apscrm.api.v1.sponsorizare.service.SponsorizareService;
 
@@ -20,7 +22,8 @@ import java.util.Map;
 public class SponsorizareController {
 
     private final SponsorizareService service;
-    private final D177SettingsRepository settingsRepo;
+    private final PostFlagsCache flagsCache;
+    private final PostFlagsService flagsService;
 
     @GetMapping
     public Page<SponsorizareResponseDto> list(Pageable pageable){
@@ -33,6 +36,12 @@ public class SponsorizareController {
         return service.search(pageable, q);
     }
 
+    /** Aceleași flag-uri pe o listă de id-uri; rezultat per id. */
+    @PutMapping("/flags")
+    public FlagsBulkResultDto bulkFlags(@RequestBody FlagsBulkRequest body){
+        return flagsService.bulkUpdate("aps_sponsorship", body);
+    }
+
     // toggle flags persistente (insert dacă nu există)
     @PutMapping("/{id}/flags")
     @Transactional
@@ -40,7 +49,7 @@ public class SponsorizareController {
         Boolean downloaded = body.containsKey("downloaded") ? (Boolean) body.get("downloaded") : null;
         Boolean verified   = body.containsKey("verified")   ? (Boolean) body.get("verified")   : null;
         Boolean corrupt    = body.containsKey("corrupt")    ? (Boolean) body.get("corrupt")    : null;
-        settingsRepo.upsertFlags(id, downloaded, verified, corrupt);
+        flagsCache.upsert(id, downloaded, verified, corrupt);
         return ResponseEntity.noContent().build();
     }
 
@@ -0,0 +1,189 @@
+package rotld.apscrm.api.v1.sponsorizare.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import rotld.apscrm.common.PhpSerialized;
+import rotld.apscrm.common.PostSnapshot;
+import rotld.apscrm.common.StreamingJdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Varianta "raw" a subselect-ului din {@link Sponsorizare}: blob-urile PHP vin ca atare din SQL și câmpurile
+ * derivate se decodează în Java. Rândurile decodate stau într-un {@link PostSnapshot}, deci blob-urile se citesc
+ * doar pentru sponsorizările noi sau modificate, nu la fiecare pagină.
+ * Semnătura base64 (mare) nu intră în listă – se citește separat doar pentru rândurile de pe pagină.
+ * Flag-urile nu se mai iau prin join – vin din PostFlagsCache.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SponsorizareBlobRepository {
+
+    private static final String SQL = """
+      SELECT
+        s.ID                                          AS id,
+        DATE_FORMAT(s.post_date, '%Y-%m-%dT%H:%i:%s') AS post_date_iso,
+        s.post_title                                  AS title,
+        docfile.meta_value                            AS doc_file,
+        jsonfile.meta_value                           AS json_file,
+        sigfile.meta_value                            AS sig_file,
+        CASE WHEN sendmail.meta_value = '1' THEN 1 ELSE 0 END AS send_email,
+        firma.meta_value                              AS firma,
+        coresp.meta_value                             AS coresp,
+        reprez.meta_value                             AS reprez,
+        banca.meta_value                              AS banca,
+        contract.meta_value                           AS contract
+      FROM wordpress.wp_posts s
+      LEFT JOIN wordpress.wp_postmeta d        ON d.post_id  = s.ID AND d.meta_key  = '_aps_doc_id'
+      LEFT JOIN wordpress.wp_postmeta j        ON j.post_id  = s.ID AND j.meta_key  = '_aps_json_id'
+      LEFT JOIN wordpress.wp_postmeta sg       ON sg.post_id = s.ID AND sg.meta_key = '_aps_signature_id'
+      LEFT JOIN wordpress.wp_postmeta docfile  ON docfile.post_id  = d.meta_value  AND docfile.meta_key  = '_wp_attached_file'
+      LEFT JOIN wordpress.wp_postmeta jsonfile ON jsonfile.post_id = j.meta_value  AND jsonfile.meta_key = '_wp_attached_file'
+      LEFT JOIN wordpress.wp_postmeta sigfile  ON sigfile.post_id  = sg.meta_value AND sigfile.meta_key  = '_wp_attached_file'
+      LEFT JOIN wordpress.wp_postmeta firma    ON firma.post_id    = s.ID AND firma.meta_key    = '_aps_firma'
+      LEFT JOIN wordpress.wp_postmeta coresp   ON coresp.post_id   = s.ID AND coresp.meta_key   = '_aps_coresp'
+      LEFT JOIN wordpress.wp_postmeta reprez   ON reprez.post_id   = s.ID AND reprez.meta_key   = '_aps_reprez'
+      LEFT JOIN wordpress.wp_postmeta banca    ON banca.post_id    = s.ID AND banca.meta_key    = '_aps_banca'
+      LEFT JOIN wordpress.wp_postmeta contract ON contract.post_id = s.ID AND contract.meta_key = '_aps_contract'
+      LEFT JOIN wordpress.wp_postmeta sendmail ON sendmail.post_id = s.ID AND sendmail.meta_key = '_aps_send_email'
+      WHERE s.post_type = 'aps_sponsorship'
+        AND s.post_status = 'publish'
+        AND (s.ID > :afterId OR s.post_modified >= :since)
+    """;
+
+    /* exportul CSV: toate rândurile, într-un singur query citit în streaming */
+    private static final String EXPORT_SQL = SQL + "ORDER BY s.ID DESC";
+
+    private static final int SIGNATURE_CHUNK = 500;
+
+    private static final String SITE = "http://actiunepentrusanatate.ro";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Value("${app.php-blobs.snapshot-max-age-ms:900000}")
+    private long snapshotMaxAgeMs;
+
+    private PostSnapshot<Sponsorizare> snapshot;
+    private NamedParameterJdbcTemplate streaming;
+
+    private record Row(int id, String postDateIso, String title, String docFile, String jsonFile, String sigFile,
+                       boolean sendEmail, Map<String, String> firma, Map<String, String> coresp,
+                       Map<String, String> reprez, Map<String, String> banca, Map<String, String> contract) {}
+
+    @PostConstruct
+    void init() {
+        snapshot = new PostSnapshot<>(jdbc, "aps_sponsorship", snapshotMaxAgeMs, this::load);
+        streaming = StreamingJdbc.of(jdbc);
+    }
+
+    /** Toate sponsorizările, cu câmpurile derivate populate din blob-uri (fără signatureB64). */
+    public List<Sponsorizare> findAllDecoded() {
+        return snapshot.rows();
+    }
+
+    /**
+     * Toate sponsorizările, id descrescător, cu semnătura base64 (pentru export). Semnăturile se citesc pe loturi,
+     * pe altă conexiune – cea cu rezultatul în streaming nu poate rula alte query-uri până nu e consumat.
+     */
+    public void forEach(Consumer<Sponsorizare> sink) {
+        List<Sponsorizare> chunk = new ArrayList<>(SIGNATURE_CHUNK);
+        streaming.query(EXPORT_SQL, new MapSqlParameterSource().addValue("afterId", 0).addValue("since", new Timestamp(0)),
+                (RowCallbackHandler) rs -> {
+                    chunk.add(map(row(rs)));
+                    if (chunk.size() >= SIGNATURE_CHUNK) emit(chunk, sink);
+                });
+        emit(chunk, sink);
+    }
+
+    private void emit(List<Sponsorizare> chunk, Consumer<Sponsorizare> sink) {
+        Map<Integer, String> signatures = signaturesFor(chunk.stream().map(Sponsorizare::getId).toList());
+        for (Sponsorizare s : chunk) {
+            s.setSignatureB64(signatures.get(s.getId()));
+            sink.accept(s);
+        }
+        chunk.clear();
+    }
+
+    private Map<Integer, Sponsorizare> load(long afterId, Timestamp since) {
+        Map<Integer, Sponsorizare> out = new HashMap<>();
+        jdbc.query(SQL, new MapSqlParameterSource().addValue("afterId", afterId).addValue("since", since),
+                (RowCallbackHandler) rs -> out.put(rs.getInt("id"), map(row(rs))));
+        return out;
+    }
+
+    private static Row row(ResultSet rs) throws SQLException {
+        return new Row(
+                rs.getInt("id"), rs.getString("post_date_iso"), rs.getString("title"),
+                rs.getString("doc_file"), rs.getString("json_file"), rs.getString("sig_file"),
+                rs.getBoolean("send_email"),
+                PhpSerialized.parseAssoc(rs.getBytes("firma")), PhpSerialized.parseAssoc(rs.getBytes("coresp")),
+                PhpSerialized.parseAssoc(rs.getBytes("reprez")), PhpSerialized.parseAssoc(rs.getBytes("banca")),
+                PhpSerialized.parseAssoc(rs.getBytes("contract")));
+    }
+
+    /** post_id → semnătura base64, doar pentru id-urile cerute (ex: pagina curentă). */
+    public Map<Integer, String> signaturesFor(Collection<Integer> ids) {
+        if (ids.isEmpty()) return Map.of();
+        Map<Integer, String> out = new HashMap<>();
+        jdbc.query("""
+              SELECT post_id, meta_value FROM wordpress.wp_postmeta
+              WHERE meta_key = '_aps_signature_b64' AND post_id IN (:ids)
+            """,
+                new MapSqlParameterSource("ids", ids),
+                (RowCallbackHandler) rs -> out.put(rs.getInt("post_id"), rs.getString("meta_value")));
+        return out;
+    }
+
+    private static Sponsorizare map(Row r) {
+        int id = r.id();
+        Map<String, String> firma    = r.firma();
+        Map<String, String> coresp   = r.coresp();
+        Map<String, String> reprez   = r.reprez();
+        Map<String, String> banca    = r.banca();
+        Map<String, String> contract = r.contract();
+        String amount = contract.get("suma");
+        return Sponsorizare.builder()
+                .id(id)
+                .postDateIso(r.postDateIso())
+                .title(r.title())
+                .docUrl(upload(r.docFile()))
+                .jsonUrl(upload(r.jsonFile()))
+                .signatureUrl(upload(r.sigFile()))
+                .sendEmail(r.sendEmail())
+                .companyName(firma.get("denumire"))
+                .fiscalCode(firma.get("cui"))
+                .companyRegCom(firma.get("regcom"))
+                .companyAddress(firma.get("adresa"))
+                .companyCounty(firma.get("judet"))
+                .companyCity(firma.get("oras"))
+                .email(reprez.get("email"))
+                .phone(reprez.get("tel"))
+                .repFirstName(reprez.get("prenume"))
+                .repLastName(reprez.get("nume"))
+                .repRole(reprez.get("pozitie"))
+                .corrAddress(coresp.get("adresa"))
+                .corrCounty(coresp.get("judet"))
+                .corrCity(coresp.get("oras"))
+                .iban(banca.get("iban"))
+                .bankName(banca.get("banca"))
+                .amountStr(amount)
+                .amountNum(PhpSerialized.unsigned(amount))
+                .contractDate(contract.get("data"))
+                .detail(SITE + "/wp-json/aps/v1/sponsorships/" + id)
+                .adminEdit(SITE + "/wp-admin/post.php?post=" + id + "&action=edit")
+                .build();
+    }
+
+    private static String upload(String file) {
+        return file == null ? null : SITE + "/wp-content/uploads/" + file;
+    }
+}
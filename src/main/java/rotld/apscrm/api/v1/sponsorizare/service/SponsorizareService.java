@@ -3,6 +3,8 @@ package rotld.apscrm.api.v1.sponsorizare.service;
 
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -12,24 +14,36 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
-import rotld.apscrm.api.v1.d177.repository.D177Settings;
-import rotld.apscrm.api.v1.d177.repository.D177SettingsRepository;
+import rotld.apscrm.api.v1.kpi.service.KpiChangedEvent;
+import rotld.apscrm.api.v1.kpi.service.KpiSection;
+import rotld.apscrm.api.v1.d177.service.PostFlagsCache;
 import rotld.apscrm.api.v1.sponsorizare.dto.SponsorizareResponseDto;
 import rotld.apscrm.api.v1.sponsorizare.repository.Sponsorizare;
+import rotld.apscrm.api.v1.sponsorizare.repository.SponsorizareBlobRepository;
 import rotld.apscrm.api.v1.sponsorizare.repository.SponsorizareRepository;
+import rotld.apscrm.common.InMemoryPage;
+import rotld.apscrm.common.TextSearch;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 public class SponsorizareService {
 
     private final SponsorizareRepository repo;
-    private final D177SettingsRepository settingsRepo;
+    private final PostFlagsCache flagsCache;
+    private final SponsorizareBlobRepository blobRepo;
+    private final ApplicationEventPublisher events;
+
+    /** true: câmpurile derivate se decodează în Java din blob-uri (snapshot în memorie), nu cu LOCATE în subselect */
+    @Value("${app.php-blobs.decode-in-java:false}")
+    private boolean decodeInJava;
 
     private static final Map<String,String> SORT_MAP = Map.ofEntries(
             Map.entry("companyName",  "companyName"),
@@ -49,6 +63,26 @@ public class SponsorizareService {
             "id","postDateIso","companyName","fiscalCode","email","phone","iban",
             "amountNum","amountStr","contractDate","downloaded","verified","corrupt"
     );
+    /* flag-urile se sortează după PostFlagsCache, nu după join */
+    private final Map<String, Comparator<Sponsorizare>> sortKeys = Map.ofEntries(
+            Map.entry("id",           InMemoryPage.natural(Sponsorizare::getId)),
+            Map.entry("postDateIso",  InMemoryPage.text(Sponsorizare::getPostDateIso)),
+            Map.entry("companyName",  InMemoryPage.text(Sponsorizare::getCompanyName)),
+            Map.entry("fiscalCode",   InMemoryPage.text(Sponsorizare::getFiscalCode)),
+            Map.entry("email",        InMemoryPage.text(Sponsorizare::getEmail)),
+            Map.entry("phone",        InMemoryPage.text(Sponsorizare::getPhone)),
+            Map.entry("iban",         InMemoryPage.text(Sponsorizare::getIban)),
+            Map.entry("amountNum",    InMemoryPage.natural(Sponsorizare::getAmountNum)),
+            Map.entry("amountStr",    InMemoryPage.text(Sponsorizare::getAmountStr)),
+            Map.entry("contractDate", InMemoryPage.text(Sponsorizare::getContractDate)),
+            Map.entry("downloaded",   flagOrder(PostFlagsCache.DOWNLOADED)),
+            Map.entry("verified",     flagOrder(PostFlagsCache.VERIFIED)),
+            Map.entry("corrupt",      flagOrder(PostFlagsCache.CORRUPT))
+    );
+
+    private Comparator<Sponsorizare> flagOrder(int flag){
+        return Comparator.comparingInt(r -> flagsCache.bit(r.getId(), flag));
+    }
 
     private Pageable remapSort(Pageable pageable){
         Sort sort = pageable.getSort();
@@ -66,24 +100,23 @@ public class SponsorizareService {
 
     public Page<SponsorizareResponseDto> list(Pageable pageable){
         Pageable p = remapSort(pageable);
-        Page<Sponsorizare> page = repo.findAll(p);
-        Map<Integer, D177Settings> flags = fetchFlags(page.getContent());
-        return page.map(r -> toDto(r, flags.get(r.getId())));
+        Page<Sponsorizare> page = decodeInJava
+                ? withSignatures(InMemoryPage.of(blobRepo.findAllDecoded(), r -> true, p, sortKeys))
+                : repo.findAll(p);
+        return page.map(this::toDto);
     }
 
-    public Page<SponsorizareResponseDto> search(Pageable pageable, String q){
-        Pageable p = remapSort(pageable);
-        Specification<Sponsorizare> spec = buildSpec(q);
-        Page<Sponsorizare> page = repo.findAll(spec, p);
-        Map<Integer, D177Settings> flags = fetchFlags(page.getContent());
-        return page.map(r -> toDto(r, flags.get(r.getId())));
+    /** Toate sponsorizările pentru export, id descrescător, dintr-un singur query citit în streaming. */
+    public void exportAll(Consumer<SponsorizareResponseDto> sink){
+        blobRepo.forEach(r -> sink.accept(toDto(r)));
     }
 
-    private Map<Integer, D177Settings> fetchFlags(List<Sponsorizare> rows){
-        if (rows.isEmpty()) return Map.of();
-        List<Integer> ids = rows.stream().map(Sponsorizare::getId).toList();
-        return settingsRepo.findByPostIdIn(ids).stream()
-                .collect(Collectors.toMap(D177Settings::getPostId, x -> x));
+    public Page<SponsorizareResponseDto> search(Pageable pageable, String q){
+        Pageable p = remapSort(pageable);
+        Page<Sponsorizare> page = decodeInJava
+                ? withSignatures(InMemoryPage.of(blobRepo.findAllDecoded(), matcher(q), p, sortKeys))
+                : repo.findAll(buildSpec(q), p);
+        return page.map(this::toDto);
     }
 
     private Specification<Sponsorizare> buildSpec(String q){
@@ -104,6 +137,20 @@ public class SponsorizareService {
         };
     }
 
+    /** Echivalentul în Java al {@link #buildSpec(String)}. */
+    private static java.util.function.Predicate<Sponsorizare> matcher(String q){
+        return TextSearch.matcher(q, Sponsorizare::getId, List.<Function<Sponsorizare, String>>of(
+                Sponsorizare::getCompanyName, Sponsorizare::getFiscalCode, Sponsorizare::getEmail,
+                Sponsorizare::getPhone, Sponsorizare::getIban));
+    }
+
+    /** Semnătura base64 nu e în lista decodată; o citim doar pentru rândurile din pagină. */
+    private Page<Sponsorizare> withSignatures(Page<Sponsorizare> page){
+        Map<Integer, String> sigs = blobRepo.signaturesFor(page.map(Sponsorizare::getId).getContent());
+        page.forEach(r -> r.setSignatureB64(sigs.get(r.getId())));
+        return page;
+    }
+
     private static String nz(String... v){
         for (String s : v) if (s != null && !s.isBlank()) return s.trim();
         return "";
@@ -114,18 +161,17 @@ public class SponsorizareService {
         repo.deleteMeta(id);
         int affected = repo.deletePost(id);
         if (affected == 0) throw new IllegalArgumentException("D177 record not found: " + id);
+        events.publishEvent(new KpiChangedEvent(KpiSection.SPONSORSHIP));
     }
 
     @Transactional(readOnly = true)
     public SponsorizareResponseDto findOne(Integer id){
         Sponsorizare r = repo.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Sponsorizare not found: " + id));
-        // recuperează flags persistente dacă există
-        D177Settings flags = fetchFlags(List.of(r)).get(r.getId());
-        return toDto(r, flags);
+        return toDto(r);
     }
 
-    private SponsorizareResponseDto toDto(Sponsorizare r, D177Settings ps){
+    private SponsorizareResponseDto toDto(Sponsorizare r){
         return SponsorizareResponseDto.builder()
                 .id(r.getId())
                 .date(r.getPostDateIso())
@@ -145,9 +191,9 @@ public class SponsorizareService {
                 .detail(nz(r.getDetail(), r.getAdminEdit()))
                 .adminEdit(r.getAdminEdit())
 
-                .downloaded(Boolean.TRUE.equals(ps != null ? ps.getDownloaded() : r.getDownloaded()))
-                .verified(Boolean.TRUE.equals(ps != null ? ps.getVerified()   : r.getVerified()))
-                .corrupt(Boolean.TRUE.equals(ps != null ? ps.getCorrupt()     : r.getCorrupt()))
+                .downloaded(flagsCache.has(r.getId(), PostFlagsCache.DOWNLOADED, r.getDownloaded()))
+                .verified(flagsCache.has(r.getId(), PostFlagsCache.VERIFIED,   r.getVerified()))
+                .corrupt(flagsCache.has(r.getId(), PostFlagsCache.CORRUPT,     r.getCorrupt()))
 
                 // ✨ extra pentru view
                 .companyRegCom(nz(r.getCompanyRegCom()))
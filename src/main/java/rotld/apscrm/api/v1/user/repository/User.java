@@ -78,6 +78,9 @@ public class User implements UserDetails {
     @Column(name="last_activity_at")
     private LocalDateTime lastActivityAt;
 
+    @Column(name="time_zone", length = 64)
+    private String timeZone;
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return List.of(new SimpleGrantedAuthority(userRole.toString()));
@@ -63,4 +63,11 @@ public interface UserRepository extends JpaRepository<User, String>, JpaSpecific
     @Modifying
     @Query("UPDATE User u SET u.lastActivityAt = :timestamp WHERE u.id = :userId")
     void updateLastActivity(@Param("userId") String userId, @Param("timestamp") LocalDateTime timestamp);
+
+    /**
+     * Update the device time zone used for local-time reminders
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.timeZone = :timeZone WHERE u.id = :userId")
+    void updateTimeZone(@Param("userId") String userId, @Param("timeZone") String timeZone);
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package rotld.apscrm.api.v1.user.service;
 
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -12,6 +13,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import rotld.apscrm.api.v1.auth.repository.RefreshTokenRepository;
+import rotld.apscrm.api.v1.kpi.service.KpiChangedEvent;
+import rotld.apscrm.api.v1.kpi.service.KpiSection;
 import rotld.apscrm.api.v1.logopedy.repository.ProfileLessonStatusRepo;
 import rotld.apscrm.api.v1.logopedy.repository.ProfileProgressRepo;
 import rotld.apscrm.api.v1.logopedy.repository.ProfileRepo;
@@ -36,6 +39,7 @@ public class UserService {
     private final ProfileProgressRepo profileProgressRepo;
     private final S3Service s3Service;
     private final PushNotificationService pushNotificationService;
+    private final ApplicationEventPublisher events;
 
     public List<User> allUsers() {
         return userRepository.findAll();
@@ -117,6 +121,7 @@ public class UserService {
         String userId = id.toString();
         if (userRepository.updatePremium(userId, premium) == 0)
             throw new IllegalArgumentException("User not found: " + id);
+        events.publishEvent(new KpiChangedEvent(KpiSection.PERSOANE));
         
         // Send push notification when premium is granted
         if (premium) {
@@ -151,6 +156,7 @@ public class UserService {
         if (userRepository.hardDelete(userId) == 0) {
             throw new IllegalArgumentException("User not found: " + id);
         }
+        events.publishEvent(new KpiChangedEvent(KpiSection.PERSOANE));
     }
 
     @Transactional
@@ -10,8 +10,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import rotld.apscrm.api.v1.volunteer.dto.VolunteerDetailsDto;
 import rotld.apscrm.api.v1.volunteer.dto.VolunteerResponseDto;
-import rotld.apscrm.api.v1.volunteer.mapper.VolunteerMapper;
-import rotld.apscrm.api.v1.volunteer.repository.Volunteer;
 import rotld.apscrm.api.v1.volunteer.service.VolunteerQueryService;
 import rotld.apscrm.api.v1.volunteer.service.VolunteerService;
 
@@ -28,8 +26,7 @@ public class VolunteerController {
     public Page<VolunteerResponseDto> getPageableRemoteWorkRequests(@PageableDefault(size = 50, sort = "id") Pageable pageable) {
         log.info("Getting all volunteers with pageable: <{}>", pageable);
 
-        var volunteers = volunteerQueryService.findAllPage(pageable)
-                .map(VolunteerMapper::toResponseDto);
+        var volunteers = volunteerQueryService.findAllPage(pageable);
 
         log.info("Successfully returned volunteers with pageable: <{}>", pageable);
         return volunteers;
@@ -41,11 +38,9 @@ public class VolunteerController {
             @PageableDefault(size = 10, sort = "id", direction = Sort.Direction.DESC) Pageable pageable) {
 
         // dacă q e gol, returnăm lista standard (păstrăm același endpoint pentru FE)
-        Page<Volunteer> page = q == null || q.isBlank()
+        return q == null || q.isBlank()
                 ? volunteerQueryService.findAllPage(pageable)
                 : volunteerQueryService.search(q, pageable);
-
-        return page.map(VolunteerMapper::toResponseDto);
     }
 
     @DeleteMapping("/{id}")
@@ -0,0 +1,96 @@
+package rotld.apscrm.api.v1.volunteer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Încărcare în bloc a voluntarilor: postările aps_volunteer + toate meta-urile _vol_* într-un singur
+ * query pivot (un rând per voluntar), în loc de 1 + N accesări pe colecția lazy {@code Volunteer.meta}.
+ * Folosit de indexul de search, de export și de KPI.
+ */
+@Repository
+@RequiredArgsConstructor
+public class VolunteerBulkRepository {
+
+    private static final String SELECT = """
+      SELECT
+        s.ID          AS id,
+        s.post_date   AS post_date,
+        s.post_title  AS post_title,
+        s.post_status AS post_status,
+        s.guid        AS link,
+        MAX(CASE WHEN m.meta_key = '_vol_nume'             THEN m.meta_value END) AS last_name,
+        MAX(CASE WHEN m.meta_key = '_vol_prenume'          THEN m.meta_value END) AS first_name,
+        MAX(CASE WHEN m.meta_key = '_vol_email'            THEN m.meta_value END) AS email,
+        MAX(CASE WHEN m.meta_key = '_vol_telefon'          THEN m.meta_value END) AS phone,
+        MAX(CASE WHEN m.meta_key = '_vol_varsta'           THEN m.meta_value END) AS age,
+        MAX(CASE WHEN m.meta_key = '_vol_ocupatie'         THEN m.meta_value END) AS ocupation,
+        MAX(CASE WHEN m.meta_key = '_vol_domeniu'          THEN m.meta_value END) AS domain,
+        MAX(CASE WHEN m.meta_key = '_vol_disponibilitate'  THEN m.meta_value END) AS disponibility,
+        MAX(CASE WHEN m.meta_key = '_vol_motivatie'        THEN m.meta_value END) AS motivation,
+        MAX(CASE WHEN m.meta_key = '_vol_experienta'       THEN m.meta_value END) AS experience
+      FROM wordpress.wp_posts s
+      LEFT JOIN wordpress.wp_postmeta m
+             ON m.post_id = s.ID
+            AND m.meta_key IN ('_vol_nume','_vol_prenume','_vol_email','_vol_telefon','_vol_varsta',
+                               '_vol_ocupatie','_vol_domeniu','_vol_disponibilitate','_vol_motivatie','_vol_experienta')
+      WHERE s.post_type = 'aps_volunteer'
+    """;
+
+    private static final String GROUP = """
+      GROUP BY s.ID, s.post_date, s.post_title, s.post_status, s.guid
+      ORDER BY s.ID DESC
+    """;
+
+    private static final String SQL = SELECT + GROUP;
+
+    /* keyset: voluntarii cu ID < :before, câte :limit pe lot (export) */
+    private static final String BATCH_SQL = SELECT + "  AND (:before IS NULL OR s.ID < :before)\n" + GROUP + "  LIMIT :limit\n";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public List<VolunteerDocument> findAll() {
+        return jdbc.query(SQL, new MapSqlParameterSource(), (rs, i) -> map(rs));
+    }
+
+    /** Lot pentru export: voluntarii cu ID < beforeId (null = primul lot), descrescător după ID. */
+    public List<VolunteerDocument> findBatch(Integer beforeId, int limit) {
+        return jdbc.query(BATCH_SQL,
+                new MapSqlParameterSource().addValue("before", beforeId).addValue("limit", limit),
+                (rs, i) -> map(rs));
+    }
+
+    /** Variantă streaming: rândurile sunt date mai departe pe măsură ce vin din ResultSet. */
+    public void forEach(Consumer<VolunteerDocument> consumer) {
+        jdbc.query(SQL, new MapSqlParameterSource(), (RowCallbackHandler) rs -> consumer.accept(map(rs)));
+    }
+
+    private static VolunteerDocument map(ResultSet rs) throws SQLException {
+        Date postDate = rs.getDate("post_date");
+        return VolunteerDocument.of(
+                rs.getInt("id"),
+                postDate == null ? null : postDate.toLocalDate(),
+                rs.getString("post_title"),
+                rs.getString("post_status"),
+                rs.getString("link"),
+                rs.getString("last_name"),
+                rs.getString("first_name"),
+                rs.getString("email"),
+                rs.getString("phone"),
+                rs.getString("age"),
+                rs.getString("ocupation"),
+                rs.getString("domain"),
+                rs.getString("disponibility"),
+                rs.getString("motivation"),
+                rs.getString("experience"));
+    }
+}
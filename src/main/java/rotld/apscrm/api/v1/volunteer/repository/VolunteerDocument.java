@@ -0,0 +1,104 @@
+package rotld.apscrm.api.v1.volunteer.repository;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Document denormalizat pentru un voluntar: rândul din wp_posts + toate meta-urile _vol_*
+ * pivotate într-un singur rând, plus textul normalizat folosit la search și cheile tipizate de sortare.
+ */
+public record VolunteerDocument(
+        Integer id,
+        LocalDate postDate,
+        String postTitle,
+        String postStatus,
+        String link,
+        String lastName,
+        String firstName,
+        String email,
+        String phone,
+        String age,
+        String ocupation,
+        String domain,
+        String disponibility,
+        String motivation,
+        String experience,
+        String searchText,
+        /* chei de sortare (tipizate / normalizate o singură dată la încărcare) */
+        Integer ageValue,
+        String nameKey,
+        String postTitleKey,
+        String emailKey,
+        String domainKey,
+        String ocupationKey,
+        String motivationKey,
+        String experienceKey
+) {
+    /** Separator între câmpuri în searchText – nu poate apărea într-un termen de căutare. */
+    static final char SEP = '\u0000';
+
+    private static final Comparator<VolunteerDocument> BY_ID = Comparator.comparing(VolunteerDocument::id);
+
+    /**
+     * Ordinea ascendentă pentru fiecare cheie de sortare din UI; egalitățile se departajează după id,
+     * ca ordinea descendentă să fie exact inversul (ex: age desc, id desc).
+     */
+    public static final Map<String, Comparator<VolunteerDocument>> SORT_KEYS = Map.of(
+            "id",         BY_ID,
+            "date",       Comparator.comparing(VolunteerDocument::postDate, Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(BY_ID),
+            "postName",   Comparator.comparing(VolunteerDocument::postTitleKey).thenComparing(BY_ID),
+            "name",       Comparator.comparing(VolunteerDocument::nameKey).thenComparing(BY_ID),
+            "email",      Comparator.comparing(VolunteerDocument::emailKey).thenComparing(BY_ID),
+            "domain",     Comparator.comparing(VolunteerDocument::domainKey).thenComparing(BY_ID),
+            "ocupation",  Comparator.comparing(VolunteerDocument::ocupationKey).thenComparing(BY_ID),
+            "motivation", Comparator.comparing(VolunteerDocument::motivationKey).thenComparing(BY_ID),
+            "experience", Comparator.comparing(VolunteerDocument::experienceKey).thenComparing(BY_ID),
+            "age",        Comparator.comparing(VolunteerDocument::ageValue, Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(BY_ID)
+    );
+
+    public static VolunteerDocument of(Integer id, LocalDate postDate, String postTitle, String postStatus, String link,
+                                       String lastName, String firstName, String email, String phone,
+                                       String age, String ocupation, String domain, String disponibility,
+                                       String motivation, String experience) {
+        // aceleași câmpuri ca vechiul search: nume (nume + prenume), titlu, email, telefon, ocupație, domeniu
+        String text = norm(nz(lastName) + " " + nz(firstName)) + SEP
+                + norm(postTitle) + SEP
+                + norm(email) + SEP
+                + norm(phone) + SEP
+                + norm(ocupation) + SEP
+                + norm(domain);
+        return new VolunteerDocument(id, postDate, postTitle, postStatus, link, lastName, firstName, email, phone,
+                age, ocupation, domain, disponibility, motivation, experience, text,
+                safeInt(age),
+                norm(lastName) + SEP + norm(firstName),
+                norm(postTitle),
+                norm(email),
+                norm(domain),
+                norm(ocupation),
+                norm(motivation),
+                norm(experience));
+    }
+
+    public boolean matches(String normalizedTerm, String rawTerm) {
+        return searchText.contains(normalizedTerm) || String.valueOf(id).contains(rawTerm);
+    }
+
+    public String name() {
+        return (nz(lastName) + " " + nz(firstName)).trim();
+    }
+
+    public static String norm(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String nz(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static Integer safeInt(String s) {
+        if (s == null || s.isBlank()) return null;
+        try { return Integer.valueOf(s.trim()); } catch (NumberFormatException e) { return null; }
+    }
+}
@@ -17,7 +17,7 @@ public class VolunteerMeta {
     private String metaKey;
     private String metaValue;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "post_id")
     private Volunteer volunteer;
 }
@@ -20,38 +20,6 @@ public interface VolunteerRepository extends JpaRepository<Volunteer, Integer>,
     @Query("SELECT v FROM Volunteer v WHERE v.postType = 'aps_volunteer'")
     Page<Volunteer> findAll(Pageable pageable);
 
-    @Query(
-            value = """
-      select v
-      from Volunteer v
-      left join v.meta age with age.metaKey = '_vol_varsta'
-      where v.postType = 'aps_volunteer'
-      order by cast(age.metaValue as integer) asc, v.id asc
-    """,
-            countQuery = """
-      select count(v)
-      from Volunteer v
-      where v.postType = 'aps_volunteer'
-    """
-    )
-    Page<Volunteer> findAllOrderByAgeAsc(Pageable pageable);
-
-    @Query(
-            value = """
-      select v
-      from Volunteer v
-      left join v.meta age with age.metaKey = '_vol_varsta'
-      where v.postType = 'aps_volunteer'
-      order by cast(age.metaValue as integer) desc, v.id desc
-    """,
-            countQuery = """
-      select count(v)
-      from Volunteer v
-      where v.postType = 'aps_volunteer'
-    """
-    )
-    Page<Volunteer> findAllOrderByAgeDesc(Pageable pageable);
-
     @Modifying
     @Transactional
     @Query("DELETE FROM VolunteerMeta vm WHERE vm.volunteer.id = :postId")
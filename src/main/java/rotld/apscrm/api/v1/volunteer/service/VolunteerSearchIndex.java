@@ -0,0 +1,130 @@
+package rotld.apscrm.api.v1.volunteer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import rotld.apscrm.api.v1.volunteer.repository.VolunteerBulkRepository;
+import rotld.apscrm.api.v1.volunteer.repository.VolunteerDocument;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Index în memorie cu documentele voluntarilor (id → text normalizat + câmpuri pentru DTO).
+ * Se construiește prin {@link VolunteerBulkRepository} (un singur query pivot pe wp_postmeta); la fiecare citire se
+ * verifică o semnătură ieftină (COUNT / MAX(ID) / MAX(post_modified)), deci inserturile, ștergerile și editările
+ * salvate în wp-admin se văd imediat. Meta-urile scrise direct, fără salvarea postării, se prind la reîncărcarea
+ * periodică. Search-ul devine un scan peste snapshot, fără join-uri pe meta.
+ * <p>
+ * Pentru fiecare cheie de sortare ținem ordinea precalculată (permutare de poziții), deci
+ * orice sortare pe o singură coloană e o simplă parcurgere – echivalentul unui index scan.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VolunteerSearchIndex {
+
+    /* semnătură ieftină (acoperită de indexul type_status_date) ca să prindem inserturile/ștergerile din WP,
+       iar prin MAX(post_modified) și editările salvate din wp-admin */
+    private static final String VERSION_SQL = """
+      SELECT COUNT(*) AS n, COALESCE(MAX(s.ID), 0) AS max_id,
+             DATE_FORMAT(MAX(s.post_modified), '%Y-%m-%dT%H:%i:%s') AS modified
+      FROM wordpress.wp_posts s
+      WHERE s.post_type = 'aps_volunteer'
+    """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final VolunteerBulkRepository bulkRepo;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Documentele după id + ordinea precalculată (id-uri) pe fiecare cheie din {@link VolunteerDocument#SORT_KEYS}.
+     * Un delete scoate doar intrarea din {@code byId}; ordonările sar peste id-urile care lipsesc.
+     */
+    private record Snapshot(Map<Integer, VolunteerDocument> byId, Map<String, int[]> orderings, Version version) {}
+
+    private record Version(long count, long maxId, String modified) {}
+
+    /** Snapshot curent; se reîncarcă dacă WordPress a adăugat / șters / editat voluntari între timp. */
+    public Collection<VolunteerDocument> documents() {
+        return current().byId().values();
+    }
+
+    /**
+     * Documentele în ordinea cheii cerute (asc / desc), parcurgând permutarea precalculată.
+     * Cheile necunoscute cad pe "id".
+     */
+    public Stream<VolunteerDocument> ordered(String key, boolean ascending) {
+        Snapshot s = current();
+        int[] order = s.orderings().getOrDefault(key, s.orderings().get("id"));
+        int n = order.length;
+        return IntStream.range(0, n)
+                .map(i -> ascending ? order[i] : order[n - 1 - i])
+                .mapToObj(s.byId()::get)
+                .filter(Objects::nonNull);
+    }
+
+    public static boolean supports(String key) {
+        return VolunteerDocument.SORT_KEYS.containsKey(key);
+    }
+
+    @Scheduled(fixedDelayString = "${app.volunteers.index-refresh-ms:300000}",
+               initialDelayString = "${app.volunteers.index-refresh-ms:300000}")
+    public void refresh() {
+        try {
+            snapshot = load();
+        } catch (Exception e) {
+            log.error("Nu am putut reîncărca indexul de voluntari: {}", e.getMessage(), e);
+        }
+    }
+
+    /** Scoate un voluntar din snapshot (ex: după delete), fără să reîncărcăm tot indexul. */
+    public synchronized void evict(Integer id) {
+        Snapshot current = snapshot;
+        if (current == null || current.byId().remove(id) == null) return;
+        Version v = current.version();
+        snapshot = new Snapshot(current.byId(), current.orderings(), new Version(v.count() - 1, v.maxId(), v.modified()));
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null && current.version().equals(version())) return current;
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || !current.version().equals(version())) {
+                current = load();
+                snapshot = current;
+            }
+        }
+        return current;
+    }
+
+    private Version version() {
+        return jdbc.queryForObject(VERSION_SQL, new MapSqlParameterSource(),
+                (rs, i) -> new Version(rs.getLong("n"), rs.getLong("max_id"), rs.getString("modified")));
+    }
+
+    private Snapshot load() {
+        long start = System.currentTimeMillis();
+        Version version = version();
+        List<VolunteerDocument> rows = bulkRepo.findAll();
+        Snapshot s = build(rows, version);
+        log.info("Index voluntari încărcat: {} documente în {} ms", rows.size(), System.currentTimeMillis() - start);
+        return s;
+    }
+
+    private static Snapshot build(List<VolunteerDocument> docs, Version version) {
+        Map<String, int[]> orderings = new HashMap<>();
+        VolunteerDocument.SORT_KEYS.forEach((key, cmp) -> orderings.put(key,
+                docs.stream().sorted(cmp).mapToInt(VolunteerDocument::id).toArray()));
+        Map<Integer, VolunteerDocument> byId = new ConcurrentHashMap<>(docs.size() * 4 / 3 + 1);
+        docs.forEach(d -> byId.put(d.id(), d));
+        return new Snapshot(byId, Map.copyOf(orderings), version);
+    }
+}
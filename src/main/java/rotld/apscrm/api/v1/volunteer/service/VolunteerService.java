@@ -1,15 +1,19 @@
 package rotld.apscrm.api.v1.volunteer.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import rotld.apscrm.api.v1.kpi.service.KpiChangedEvent;
+import rotld.apscrm.api.v1.kpi.service.KpiSection;
 import rotld.apscrm.api.v1.volunteer.dto.VolunteerDetailsDto;
 import rotld.apscrm.api.v1.volunteer.dto.VolunteerResponseDto;
 import rotld.apscrm.api.v1.volunteer.mapper.VolunteerMapper;
 import rotld.apscrm.api.v1.volunteer.repository.Volunteer;
+import rotld.apscrm.api.v1.volunteer.repository.VolunteerBulkRepository;
 import rotld.apscrm.api.v1.volunteer.repository.VolunteerMeta;
 import rotld.apscrm.api.v1.volunteer.repository.VolunteerRepository;
 
@@ -22,6 +26,9 @@ import java.util.stream.Collectors;
 public class VolunteerService {
 
     private final VolunteerRepository volunteerRepository;
+    private final VolunteerBulkRepository bulkRepository;
+    private final VolunteerSearchIndex searchIndex;
+    private final ApplicationEventPublisher events;
 
     public Page<Volunteer> getAll(Pageable pageable) {
         return volunteerRepository.findAll(pageable);
@@ -34,11 +41,21 @@ public class VolunteerService {
         if (affected == 0){
             throw new IllegalArgumentException("Volunteer not found: " + id);
         }
+        searchIndex.evict(id);
+        events.publishEvent(new KpiChangedEvent(KpiSection.VOLUNTEERS));
     }
 
+    /** Toți voluntarii, încărcați în bloc (un singur query pivot, fără 1 + N pe meta). */
     public List<VolunteerResponseDto> getAll() {
-        List<Volunteer> all = volunteerRepository.findAll();
-        return all
+        return bulkRepository.findAll()
+                .stream()
+                .map(VolunteerMapper::toResponseDto)
+                .toList();
+    }
+
+    /** Lot pentru export: voluntarii cu id < beforeId (keyset, id descrescător). */
+    public List<VolunteerResponseDto> exportBatch(Integer beforeId, int size) {
+        return bulkRepository.findBatch(beforeId, size)
                 .stream()
                 .map(VolunteerMapper::toResponseDto)
                 .toList();
@@ -0,0 +1,51 @@
+package rotld.apscrm.common;
+
+import org.springframework.data.domain.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Filtrare + sortare + paginare în memorie peste rânduri deja încărcate (ex: blob-uri PHP decodate în Java),
+ * cu aceeași semantică de {@link Pageable} ca repository-urile JPA.
+ */
+public final class InMemoryPage {
+
+    private InMemoryPage() {}
+
+    /** Comparator null-first, case-insensitive pentru string-uri (ca în colațiile *_ci din MySQL). */
+    public static <T> Comparator<T> text(Function<T, String> key) {
+        return Comparator.comparing(key, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+    }
+
+    public static <T, U extends Comparable<? super U>> Comparator<T> natural(Function<T, U> key) {
+        return Comparator.comparing(key, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
+    /**
+     * @param sortKeys proprietate → comparator ascendent; proprietățile necunoscute sunt ignorate,
+     *                 fără sortare rândurile rămân în ordinea primită
+     */
+    public static <T> Page<T> of(List<T> rows, Predicate<T> filter, Pageable pageable,
+                                 Map<String, Comparator<T>> sortKeys) {
+        Comparator<T> cmp = null;
+        for (Sort.Order o : pageable.getSort()) {
+            Comparator<T> c = sortKeys.get(o.getProperty());
+            if (c == null) continue;
+            if (o.isDescending()) c = c.reversed();
+            cmp = cmp == null ? c : cmp.thenComparing(c);
+        }
+
+        var stream = rows.stream().filter(filter);
+        if (cmp != null) stream = stream.sorted(cmp);
+        List<T> hits = stream.toList();
+
+        if (pageable.isUnpaged()) return new PageImpl<>(hits, pageable, hits.size());
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        int to   = Math.min(from + pageable.getPageSize(), hits.size());
+        return new PageImpl<>(hits.subList(from, to), pageable, hits.size());
+    }
+}
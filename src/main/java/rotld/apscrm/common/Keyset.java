@@ -0,0 +1,29 @@
+package rotld.apscrm.common;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+
+import java.util.List;
+
+/**
+ * Paginare keyset pe id descrescător, pentru exporturi mari: fiecare lot e "id &lt; ultimul id văzut",
+ * fără OFFSET și fără count query (spre deosebire de Page).
+ */
+public final class Keyset {
+
+    public static final Sort ID_DESC = Sort.by(Sort.Direction.DESC, "id");
+
+    private Keyset() {}
+
+    /** id &lt; beforeId; beforeId = null înseamnă primul lot. */
+    public static <T> Specification<T> idBefore(Integer beforeId) {
+        return (root, query, cb) -> beforeId == null
+                ? cb.conjunction()
+                : cb.lessThan(root.<Integer>get("id"), beforeId);
+    }
+
+    public static <T> List<T> batch(JpaSpecificationExecutor<T> repo, Integer beforeId, int size) {
+        return repo.<T, List<T>>findBy(idBefore(beforeId), q -> q.sortBy(ID_DESC).limit(size).all());
+    }
+}
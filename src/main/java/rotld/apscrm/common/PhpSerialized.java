@@ -1,22 +1,182 @@
 package rotld.apscrm.common;
 
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.*;
 
-/** Parser minimalist pentru array-uri PHP serializate (doar chei/valori string). */
+/**
+ * Decoder pentru valori PHP serializate (a:, s:, i:, b:, d:, N;), într-o singură trecere peste bytes.
+ * <p>
+ * Lungimile din {@code s:<len>:"…"} sunt în bytes (UTF-8), deci citim exact {@code len} bytes – valorile cu
+ * ghilimele sau {@code ";} în ele sunt corecte, spre deosebire de vechiul regex. Dacă lungimea declarată e
+ * greșită (blob-uri stricate de un search-replace în WP), cădem pe căutarea lui {@code ";} ca înainte.
+ * <p>
+ * Fără cache aici: listele țin rândurile deja decodate în {@link PostSnapshot}.
+ */
 public final class PhpSerialized {
-    private static final Pattern PAIR = Pattern.compile("s:\\d+:\"([^\"]*)\";s:\\d+:\"([^\"]*)\";");
 
     private PhpSerialized(){}
 
+    /**
+     * Perechile cheie → valoare ale unui array serializat, ca string-uri. Array-urile imbricate sunt aplatizate
+     * (cheia de pe primul nivel câștigă). Tolerant: la un blob stricat întoarce ce s-a decodat până acolo.
+     */
     public static Map<String,String> parseAssoc(String s){
-        Map<String,String> map = new LinkedHashMap<>();
-        if (s == null || s.isBlank()) return map;
-        Matcher m = PAIR.matcher(s);
-        while (m.find()){
-            map.put(m.group(1), m.group(2));
+        if (s == null || s.isBlank()) return new LinkedHashMap<>();
+        return parseAssoc(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Map<String,String> parseAssoc(byte[] b){
+        Map<String,String> out = new LinkedHashMap<>();
+        if (b == null || b.length == 0) return out;
+        Decoder d = new Decoder(b);
+        try {
+            d.value();
+        } catch (RuntimeException ignored) {
+            // blob trunchiat / invalid: păstrăm ce avem
+        }
+        if (d.root != null) flatten(d.root, out);
+        return out;
+    }
+
+    /** Număr din prefixul de cifre, ca CAST(... AS UNSIGNED) din MySQL; null pentru valoare lipsă. */
+    public static Long unsigned(String s){
+        if (s == null) return null;
+        String t = s.trim();
+        long v = 0;
+        for (int i = 0; i < t.length() && Character.isDigit(t.charAt(i)); i++) v = v * 10 + (t.charAt(i) - '0');
+        return v;
+    }
+
+    /**
+     * Decodare strictă: Map (LinkedHashMap, chei ca String) / String / Long / Boolean / Double / null.
+     * @throws IllegalArgumentException dacă blob-ul nu e serializare PHP validă
+     */
+    public static Object decode(byte[] b){
+        Decoder d = new Decoder(b);
+        try {
+            Object v = d.value();
+            if (d.p != b.length) throw new IllegalArgumentException("Date în plus la poziția " + d.p);
+            return v;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Serializare PHP trunchiată", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void flatten(Map<String,Object> m, Map<String,String> out){
+        for (Map.Entry<String,Object> e : m.entrySet()) {
+            Object v = e.getValue();
+            if (v instanceof Map<?,?>) continue;
+            out.putIfAbsent(e.getKey(), scalar(v));
+        }
+        for (Object v : m.values()) {
+            if (v instanceof Map<?,?> nested) flatten((Map<String,Object>) nested, out);
+        }
+    }
+
+    private static String scalar(Object v){
+        if (v == null) return "";
+        if (v instanceof Boolean bool) return bool ? "1" : "0";
+        return v.toString();
+    }
+
+    private static final class Decoder {
+        private final byte[] b;
+        private int p;
+        private Map<String,Object> root;
+
+        Decoder(byte[] b){ this.b = b; }
+
+        Object value(){
+            byte t = b[p];
+            switch (t) {
+                case 's' -> {
+                    p += 2;
+                    int len = (int) number(':');
+                    expect('"');
+                    int start = p;
+                    int end = start + len;
+                    if (end + 1 >= b.length || b[end] != '"' || b[end + 1] != ';') {
+                        end = recover(start);
+                    }
+                    p = end + 2;
+                    return new String(b, start, end - start, StandardCharsets.UTF_8);
+                }
+                case 'i' -> {
+                    p += 2;
+                    return number(';');
+                }
+                case 'b' -> {
+                    p += 2;
+                    boolean v = b[p] == '1';
+                    p++;
+                    expect(';');
+                    return v;
+                }
+                case 'd' -> {
+                    p += 2;
+                    int start = p;
+                    while (b[p] != ';') p++;
+                    String raw = new String(b, start, p - start, StandardCharsets.ISO_8859_1);
+                    p++;
+                    return switch (raw) {
+                        case "INF" -> Double.POSITIVE_INFINITY;
+                        case "-INF" -> Double.NEGATIVE_INFINITY;
+                        case "NAN" -> Double.NaN;
+                        default -> Double.parseDouble(raw);
+                    };
+                }
+                case 'N' -> {
+                    p++;
+                    expect(';');
+                    return null;
+                }
+                case 'a' -> {
+                    p += 2;
+                    int n = (int) number(':');
+                    expect('{');
+                    Map<String,Object> m = new LinkedHashMap<>(Math.max(4, n * 4 / 3 + 1));
+                    if (root == null) root = m;
+                    for (int i = 0; i < n; i++) {
+                        Object k = value();
+                        m.put(String.valueOf(k), value());
+                    }
+                    expect('}');
+                    return m;
+                }
+                default -> throw new IllegalArgumentException("Tip PHP necunoscut '" + (char) t + "' la poziția " + p);
+            }
+        }
+
+        /** întreg zecimal (cu semn) până la terminator, fără string intermediar */
+        private long number(char terminator){
+            boolean neg = false;
+            if (b[p] == '-') { neg = true; p++; }
+            long v = 0;
+            int start = p;
+            while (b[p] != terminator) {
+                int digit = b[p] - '0';
+                if (digit < 0 || digit > 9) throw new IllegalArgumentException("Cifră invalidă la poziția " + p);
+                v = v * 10 + digit;
+                p++;
+            }
+            if (p == start) throw new IllegalArgumentException("Număr lipsă la poziția " + p);
+            p++;
+            return neg ? -v : v;
+        }
+
+        private void expect(char c){
+            if (b[p] != c) throw new IllegalArgumentException("Așteptam '" + c + "' la poziția " + p);
+            p++;
+        }
+
+        /** lungime declarată greșit: primul {@code ";} după start (comportamentul vechiului regex) */
+        private int recover(int start){
+            for (int i = start; i + 1 < b.length; i++) {
+                if (b[i] == '"' && b[i + 1] == ';') return i;
+            }
+            throw new IllegalArgumentException("String neterminat la poziția " + start);
         }
-        return map;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package rotld.apscrm.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Rândurile decodate ale unui post_type WordPress (ex: blob-urile PHP ale sponsorizărilor / 177), ținute în
+ * memorie – exact câte postări publicate sunt, fără LRU care să se golească la o scanare completă.
+ * <p>
+ * La fiecare citire se verifică o semnătură ieftină pe wp_posts (COUNT, MAX(ID), MAX(post_modified)); dacă nu s-a
+ * schimbat, lista e refolosită și MySQL nu mai citește niciun blob. Altfel se încarcă doar postările noi sau
+ * modificate ({@code ID > maxId} sau {@code post_modified >= } ultimul post_modified), iar dacă numărul nu se
+ * potrivește (ștergeri, depublicări) se reîncarcă tot. Meta-urile editate fără să atingă post_modified sunt prinse
+ * de reîncărcarea completă după {@code maxAgeMs}.
+ */
+@Slf4j
+public final class PostSnapshot<T> {
+
+    private static final String VERSION_SQL = """
+      SELECT COUNT(*) AS n, COALESCE(MAX(ID), 0) AS max_id, MAX(post_modified) AS modified
+      FROM wordpress.wp_posts
+      WHERE post_type = :type AND post_status = 'publish'
+    """;
+
+    private static final Timestamp EPOCH = new Timestamp(0);
+
+    /** Rândurile publicate cu {@code ID > afterId} sau {@code post_modified >= since}, după id. */
+    @FunctionalInterface
+    public interface Loader<T> {
+        Map<Integer, T> load(long afterId, Timestamp since);
+    }
+
+    private record Version(long count, long maxId, Timestamp modified) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final String postType;
+    private final long maxAgeMs;
+    private final Loader<T> loader;
+
+    /* id descrescător, ca ORDER BY s.ID DESC din subselect-uri */
+    private final NavigableMap<Integer, T> byId = new TreeMap<>(Comparator.reverseOrder());
+    private Version version;
+    private long loadedAt;
+    private List<T> rows = List.of();
+
+    public PostSnapshot(NamedParameterJdbcTemplate jdbc, String postType, long maxAgeMs, Loader<T> loader) {
+        this.jdbc = jdbc;
+        this.postType = postType;
+        this.maxAgeMs = maxAgeMs;
+        this.loader = loader;
+    }
+
+    /** Toate rândurile, id descrescător (listă read-only, partajată între request-uri). */
+    public synchronized List<T> rows() {
+        Version v = version();
+        boolean expired = version == null || System.currentTimeMillis() - loadedAt >= maxAgeMs;
+        if (expired) {
+            reload(v);
+        } else if (!v.equals(version)) {
+            byId.putAll(loader.load(version.maxId(), Objects.requireNonNullElse(version.modified(), EPOCH)));
+            if (byId.size() != v.count()) {
+                reload(v);
+            } else {
+                version = v;
+                rows = List.copyOf(byId.values());
+            }
+        }
+        return rows;
+    }
+
+    private void reload(Version v) {
+        long start = System.currentTimeMillis();
+        byId.clear();
+        byId.putAll(loader.load(0, EPOCH));
+        version = v;
+        loadedAt = System.currentTimeMillis();
+        rows = List.copyOf(byId.values());
+        log.info("Snapshot {}: {} postări încărcate în {} ms", postType, rows.size(), loadedAt - start);
+    }
+
+    private Version version() {
+        return jdbc.queryForObject(VERSION_SQL, new MapSqlParameterSource("type", postType),
+                (rs, i) -> new Version(rs.getLong("n"), rs.getLong("max_id"), rs.getTimestamp("modified")));
+    }
+}
@@ -0,0 +1,25 @@
+package rotld.apscrm.common;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Query-uri citite rând cu rând, pentru exporturi: cu {@code fetchSize = Integer.MIN_VALUE} Connector/J nu mai
+ * aduce tot rezultatul în memorie, ci îl citește forward-only din socket, pe măsură ce
+ * {@link org.springframework.jdbc.core.RowCallbackHandler}-ul îl consumă. Un singur query per export, deci și
+ * subselect-urile EAV se evaluează o singură dată (nu o dată per lot, ca la paginarea keyset).
+ * <p>
+ * Cât timp rezultatul e deschis, conexiunea nu poate rula alte query-uri; iar MySQL abandonează query-ul dacă
+ * nu îl citim {@code net_write_timeout} secunde – consumatorul nu trebuie să stea blocat mult pe un rând.
+ */
+public final class StreamingJdbc {
+
+    private StreamingJdbc() {}
+
+    /** Un template nou, pe același DataSource, care citește rezultatele în streaming. */
+    public static NamedParameterJdbcTemplate of(NamedParameterJdbcTemplate jdbc) {
+        JdbcTemplate t = new JdbcTemplate(jdbc.getJdbcTemplate().getDataSource());
+        t.setFetchSize(Integer.MIN_VALUE);
+        return new NamedParameterJdbcTemplate(t);
+    }
+}
@@ -0,0 +1,42 @@
+package rotld.apscrm.common;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Căutarea din liste, în Java: echivalentul filtrelor JPA {@code LIKE '%q%'} pe colații case-insensitive,
+ * plus egalitate pe id când termenul e numeric. Folosit peste rândurile decodate în memorie (D177, sponsorizări).
+ */
+public final class TextSearch {
+
+    private TextSearch() {}
+
+    /** Filtrul pentru {@code q}; fără termen acceptă tot. */
+    public static <T> Predicate<T> matcher(String q, Function<T, Integer> id, List<Function<T, String>> fields) {
+        if (q == null || q.isBlank()) return r -> true;
+        String term = q.trim().toLowerCase();
+        Integer idEq = parseIdOrNull(term);
+        return r -> {
+            if (idEq != null && idEq.equals(id.apply(r))) return true;
+            for (Function<T, String> f : fields) {
+                if (contains(f.apply(r), term)) return true;
+            }
+            return false;
+        };
+    }
+
+    /** Id-ul din termen dacă e format doar din cifre și încape în int; altfel null. */
+    public static Integer parseIdOrNull(String term) {
+        if (term == null || term.isEmpty() || !term.chars().allMatch(Character::isDigit)) return null;
+        try {
+            return Integer.parseInt(term);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean contains(String value, String term) {
+        return value != null && value.toLowerCase().contains(term);
+    }
+}
@@ -21,6 +21,7 @@ import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -32,6 +33,7 @@ public class AuthenticationService {
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final EmailSenderService emailSenderService;
+    private final EmailTemplates emailTemplates;
     private final RefreshTokenService refreshTokenService;
     private final JwtService jwtService;
     private final UserService userService;
@@ -150,64 +152,24 @@ public class AuthenticationService {
         userRepository.save(user);
     }
 
+    /* HTML-ul care era inline aici, mutat neschimbat; template/reset_password.html e alt text, nefolosit */
     private String buildResetEmailHtml(String firstNameOpt, String resetLink, String ttlMinutes) {
-        String template = """
-        <!doctype html><html lang="ro"><head><meta charset="utf-8"><meta name="viewport" content="width=device-width">
-        <title>Resetare parolă – Logopedy</title>
-        <style>
-          body{margin:0;padding:0;background:#f6f7fb;font-family:-apple-system, Segoe UI, Roboto, Arial, sans-serif;color:#111827}
-          .container{max-width:600px;margin:0 auto;background:#ffffff}
-          .header{padding:24px 24px 0;text-align:center}
-          .logo{height:40px}
-          .content{padding:24px;line-height:1.55;font-size:15px}
-          .btn-wrap{text-align:center;margin:24px 0}
-          .btn{display:inline-block;padding:12px 20px;border-radius:10px;background:#2563eb;color:#ffffff;font-weight:600}
-          .meta{font-size:12px;color:#6b7280}
-          .footer{ text-align:center;color:#6b7280;font-size:12px;padding:16px 24px 24px}
-          @media (prefers-color-scheme: dark){ body{background:#0b1220;color:#e5e7eb}.container{background:#131a2a}.meta,.footer{color:#9ca3af}.btn{background:#3b82f6} }
-        </style></head><body>
-        <div class="container"><div class="header">
-          <img class="logo" src="cid:logopedy-logo.png" alt="Logopedy">
-        </div>
-        <div class="content">
-          <p class="meta">Ai solicitat resetarea parolei pentru contul tău Logopedy.</p>
-          <h1 style="font-size:20px;margin:0 0 12px 0;">Salut{{FIRST_NAME_OPT}},</h1>
-          <p>Pentru a-ți reseta parola, apasă pe butonul de mai jos. Linkul este valabil {{TTL_MINUTES}} minute.</p>
-          <div class="btn-wrap"><a class="btn" href="{{RESET_LINK}}" target="_blank" rel="noopener">Resetează parola</a></div>
-          <p>Dacă butonul nu funcționează, copiază și lipește acest link în browser:</p>
-          <p style="word-break:break-all;"><a href="{{RESET_LINK}}" target="_blank" rel="noopener">{{RESET_LINK}}</a></p>
-          <hr style="border:none;border-top:1px solid #e5e7eb;margin:20px 0;">
-          <p class="meta">E-mail trimis automat de Logopedy. Pentru asistență: suport@logopedy.app.</p>
-        </div><div class="footer">© {{YEAR}} Logopedy</div></div>
-        </body></html>
-        """;
-
-        return template
-                .replace("{{FIRST_NAME_OPT}}", firstNameOpt == null ? "" : firstNameOpt)
-                .replace("{{TTL_MINUTES}}", ttlMinutes)
-                .replace("{{RESET_LINK}}", resetLink)
-                .replace("{{YEAR}}", String.valueOf(java.time.Year.now().getValue()));
+        return emailTemplates.get("reset_password_link.html").render(Map.of(
+                "FIRST_NAME_OPT", firstNameOpt == null ? "" : firstNameOpt,
+                "TTL_MINUTES", ttlMinutes,
+                "RESET_LINK", resetLink,
+                "YEAR", String.valueOf(java.time.Year.now().getValue())));
     }
 
     private String buildOtpEmailHtml(String firstNameOpt, String code, long ttlMinutes) {
-        return """
-    <!doctype html><html lang="ro"><head><meta charset="utf-8"><meta name="viewport" content="width=device-width">
-    <title>Cod resetare parolă – Logopedy</title>
-    <style>
-      body{margin:0;padding:0;background:#f6f7fb;font-family:-apple-system,Segoe UI,Roboto,Arial,sans-serif;color:#111827}
-      .box{max-width:600px;margin:0 auto;background:#fff;padding:24px}
-      .code{font-size:28px;letter-spacing:4px;font-weight:700;background:#111827;color:#fff;display:inline-block;padding:10px 14px;border-radius:10px}
-      .meta{color:#6b7280;font-size:12px;margin-top:16px}
-    </style></head><body>
-      <div class="box">
-        <p>Salut%s,</p>
-        <p>Codul tău de resetare a parolei este:</p>
-        <div class="code">%s</div>
-        <p>Codul expiră în %d minute și poate fi folosit o singură dată.</p>
-        <p class="meta">Dacă nu ai cerut tu această resetare, poți ignora mesajul.</p>
-      </div>
-    </body></html>
-    """.formatted(firstNameOpt == null ? "" : " " + firstNameOpt, code, ttlMinutes);
+        return otpEmailHtml("otp_password_reset.html", firstNameOpt, code, ttlMinutes);
+    }
+
+    private String otpEmailHtml(String template, String firstName, String code, long ttlMinutes) {
+        return emailTemplates.get(template).render(Map.of(
+                "FIRST_NAME_OPT", firstName == null || firstName.isEmpty() ? "" : " " + firstName,
+                "CODE", code,
+                "TTL_MINUTES", ttlMinutes));
     }
 
     private static final SecureRandom RNG = new SecureRandom();
@@ -429,24 +391,7 @@ public class AuthenticationService {
     }
 
     private String buildRegistrationOtpEmailHtml(String firstName, String code, long ttlMinutes) {
-        return """
-    <!doctype html><html lang="ro"><head><meta charset="utf-8"><meta name="viewport" content="width=device-width">
-    <title>Cod verificare înregistrare – Logopedy</title>
-    <style>
-      body{margin:0;padding:0;background:#f6f7fb;font-family:-apple-system,Segoe UI,Roboto,Arial,sans-serif;color:#111827}
-      .box{max-width:600px;margin:0 auto;background:#fff;padding:24px}
-      .code{font-size:28px;letter-spacing:4px;font-weight:700;background:#111827;color:#fff;display:inline-block;padding:10px 14px;border-radius:10px}
-      .meta{color:#6b7280;font-size:12px;margin-top:16px}
-    </style></head><body>
-      <div class="box">
-        <p>Salut%s,</p>
-        <p>Bine ai venit la Logopedy! Pentru a-ți finaliza înregistrarea, introdu următorul cod:</p>
-        <div class="code">%s</div>
-        <p>Codul expiră în %d minute și poate fi folosit o singură dată.</p>
-        <p class="meta">Dacă nu ai cerut tu această înregistrare, poți ignora mesajul.</p>
-      </div>
-    </body></html>
-    """.formatted(firstName == null || firstName.isEmpty() ? "" : " " + firstName, code, ttlMinutes);
+        return otpEmailHtml("otp_registration.html", firstName, code, ttlMinutes);
     }
 
     /**
@@ -561,28 +506,7 @@ public class AuthenticationService {
     }
 
     private String buildAccountDeletionOtpEmailHtml(String firstName, String code, long ttlMinutes) {
-        return """
-    <!doctype html><html lang="ro"><head><meta charset="utf-8"><meta name="viewport" content="width=device-width">
-    <title>Cod confirmare ștergere cont – Logopedy</title>
-    <style>
-      body{margin:0;padding:0;background:#f6f7fb;font-family:-apple-system,Segoe UI,Roboto,Arial,sans-serif;color:#111827}
-      .box{max-width:600px;margin:0 auto;background:#fff;padding:24px}
-      .code{font-size:28px;letter-spacing:4px;font-weight:700;background:#dc2626;color:#fff;display:inline-block;padding:10px 14px;border-radius:10px}
-      .warning{background:#fef2f2;border-left:4px solid #dc2626;padding:12px 16px;margin:16px 0;color:#991b1b}
-      .meta{color:#6b7280;font-size:12px;margin-top:16px}
-    </style></head><body>
-      <div class="box">
-        <p>Salut%s,</p>
-        <p>Ai solicitat ștergerea contului tău Logopedy. Pentru a confirma, introdu următorul cod:</p>
-        <div class="code">%s</div>
-        <div class="warning">
-          <strong>Atenție!</strong> Această acțiune este ireversibilă. Toate datele tale, inclusiv profilurile și progresul, vor fi șterse permanent.
-        </div>
-        <p>Codul expiră în %d minute și poate fi folosit o singură dată.</p>
-        <p class="meta">Dacă nu ai cerut tu această ștergere, ignoră acest mesaj și contul tău va rămâne în siguranță.</p>
-      </div>
-    </body></html>
-    """.formatted(firstName == null || firstName.isEmpty() ? "" : " " + firstName, code, ttlMinutes);
+        return otpEmailHtml("otp_account_deletion.html", firstName, code, ttlMinutes);
     }
 
     // ============== KID AUTHENTICATION ==============
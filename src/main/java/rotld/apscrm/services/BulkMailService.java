@@ -0,0 +1,246 @@
+package rotld.apscrm.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.*;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+import rotld.apscrm.services.EmailTemplates.InlineImage;
+
+import java.io.UnsupportedEncodingException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Trimitere în masă (email-urile 230 de reînnoire / zi de naștere).
+ * <p>
+ * Fiecare worker ține o conexiune SMTP deschisă ({@link Transport} din sesiunea lui {@link JavaMailSenderImpl})
+ * și trimite pe ea până la {@code app.mail.bulk.messages-per-connection} mesaje, în loc de un connect / AUTH /
+ * QUIT per email cum face {@link JavaMailSender#send}. O conexiune căzută se redeschide și mesajul se reîncearcă
+ * cu backoff, la fel ca răspunsurile SMTP temporare (4xx: 421, 450, 451 – greylisting, cotă); doar respingerile
+ * definitive (5xx) nu se reîncearcă.
+ * <p>
+ * Imaginile {@code cid:} vin gata citite din template-ul compilat ({@link EmailTemplates}); mesajele doar le
+ * atașează. Ritmul total e plafonat la {@code app.mail.bulk.max-per-second}, cota furnizorului SMTP.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkMailService {
+
+    private final JavaMailSender javaMailSender;
+    private final EmailTemplates templates;
+
+    @Value("${app.mail.bulk.connections:2}")
+    private int connections;
+
+    @Value("${app.mail.bulk.messages-per-connection:100}")
+    private int messagesPerConnection;
+
+    @Value("${app.mail.bulk.max-per-second:5}")
+    private double maxPerSecond;
+
+    @Value("${app.mail.bulk.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.mail.bulk.backoff-ms:2000}")
+    private long backoffMs;
+
+    public record Mail(String to, String subject, String html) {}
+
+    public record Outcome(String to, boolean sent, int attempts, String error) {}
+
+    public record Report(String template, int total, int sent, int failed, long millis, List<Outcome> outcomes) {
+        public List<Outcome> failures() {
+            return outcomes.stream().filter(o -> !o.sent()).toList();
+        }
+    }
+
+    private ExecutorService pool;
+    private long intervalNanos;
+    private long nextSlot;
+
+    @PostConstruct
+    void init() {
+        connections = Math.max(1, connections);
+        messagesPerConnection = Math.max(1, messagesPerConnection);
+        maxAttempts = Math.max(1, maxAttempts);
+        intervalNanos = maxPerSecond > 0 ? (long) (1_000_000_000L / maxPerSecond) : 0;
+        pool = Executors.newFixedThreadPool(connections, Thread.ofPlatform().name("bulk-mail-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Trimite toate mesajele și așteaptă rezultatul fiecăruia. {@code template} e numele template-ului din
+     * {@link EmailTemplates} (de acolo vin imaginile inline); pentru alt HTML imaginile se iau din primul mesaj.
+     */
+    public Report send(String template, List<Mail> mails) {
+        long start = System.currentTimeMillis();
+        if (mails.isEmpty()) return new Report(template, 0, 0, 0, 0, List.of());
+
+        List<InlineImage> images = templates.find(template).map(EmailTemplates.Template::images)
+                .orElseGet(() -> templates.inlineImages(mails.getFirst().html()));
+        BlockingQueue<Mail> queue = new LinkedBlockingQueue<>(mails);
+        Queue<Outcome> outcomes = new ConcurrentLinkedQueue<>();
+
+        int workers = Math.min(connections, mails.size());
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) futures.add(pool.submit(() -> drain(queue, images, outcomes)));
+        try {
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+        } catch (ExecutionException e) {
+            log.error("Worker de email oprit: {}", e.getCause().getMessage(), e.getCause());
+        }
+        // ce n-a apucat să fie trimis (întrerupere) apare ca eșuat
+        for (Mail m; (m = queue.poll()) != null; ) outcomes.add(new Outcome(m.to(), false, 0, "nu a fost trimis"));
+
+        List<Outcome> list = List.copyOf(outcomes);
+        int sent = (int) list.stream().filter(Outcome::sent).count();
+        Report report = new Report(template, list.size(), sent, list.size() - sent, System.currentTimeMillis() - start, list);
+        log.info("Email-uri {}: {} trimise, {} eșuate din {} în {} ms",
+                template, report.sent(), report.failed(), report.total(), report.millis());
+        return report;
+    }
+
+    private void drain(BlockingQueue<Mail> queue, List<InlineImage> images, Queue<Outcome> outcomes) {
+        try (Connection conn = new Connection()) {
+            for (Mail m; (m = queue.poll()) != null; ) {
+                if (Thread.currentThread().isInterrupted()) {
+                    queue.add(m);
+                    return;
+                }
+                outcomes.add(sendOne(conn, m, images));
+            }
+        }
+    }
+
+    private Outcome sendOne(Connection conn, Mail m, List<InlineImage> images) {
+        MimeMessage msg;
+        try {
+            msg = build(m, images);
+        } catch (MessagingException | UnsupportedEncodingException e) {
+            return new Outcome(m.to(), false, 0, e.getMessage());
+        }
+        String error = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                acquire();
+                conn.send(msg);
+                return new Outcome(m.to(), true, attempt, null);
+            } catch (MessagingException e) {
+                if (e instanceof SendFailedException && !transientReply(e)) {
+                    // adresa / mesajul respinse definitiv de server (5xx)
+                    return new Outcome(m.to(), false, attempt, e.getMessage());
+                }
+                error = e.getMessage();
+                conn.close();
+                log.warn("Trimitere către <{}> eșuată (încercarea {}/{}): {}", m.to(), attempt, maxAttempts, error);
+                if (attempt < maxAttempts && !sleep(backoffMs << (attempt - 1))) break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Outcome(m.to(), false, attempt - 1, "întrerupt");
+            }
+        }
+        return new Outcome(m.to(), false, maxAttempts, error);
+    }
+
+    /** codul SMTP 4xx al respingerii (pe excepție sau pe cea a destinatarului, în lanțul next) */
+    static boolean transientReply(MessagingException e) {
+        for (Exception x = e; x != null; x = x instanceof MessagingException me ? me.getNextException() : null) {
+            int code = x instanceof SMTPSendFailedException s ? s.getReturnCode()
+                    : x instanceof SMTPAddressFailedException a ? a.getReturnCode() : -1;
+            if (code >= 400) return code < 500;
+        }
+        return false;
+    }
+
+    private MimeMessage build(Mail m, List<InlineImage> images) throws MessagingException, UnsupportedEncodingException {
+        MimeMessage msg = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(msg, true, "UTF-8");
+        helper.setFrom(EmailSenderService.FROM_ADDRESS, EmailSenderService.FROM_NAME);
+        helper.setTo(m.to());
+        helper.setSubject(m.subject());
+        helper.setText(m.html(), true);
+        for (InlineImage img : images) helper.addInline(img.cid(), img.content(), img.contentType());
+        msg.saveChanges();
+        return msg;
+    }
+
+    /** plafonul global de mesaje pe secundă: fiecare trimitere își rezervă următorul slot liber */
+    private void acquire() throws InterruptedException {
+        if (intervalNanos == 0) return;
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextSlot < now) nextSlot = now;
+            wait = nextSlot - now;
+            nextSlot += intervalNanos;
+        }
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    private static boolean sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Conexiunea SMTP a unui worker, deschisă la primul mesaj și refolosită; se redeschide după
+     * {@code messagesPerConnection} mesaje (limita furnizorului) sau dacă serverul a închis-o.
+     */
+    private final class Connection implements AutoCloseable {
+        private Transport transport;
+        private int sent;
+
+        void send(MimeMessage msg) throws MessagingException {
+            if (!(javaMailSender instanceof JavaMailSenderImpl impl)) {
+                // alt JavaMailSender (ex: teste): fără conexiune proprie
+                try {
+                    javaMailSender.send(msg);
+                } catch (org.springframework.mail.MailException e) {
+                    throw new MessagingException(e.getMessage(), e);
+                }
+                return;
+            }
+            if (transport != null && (sent >= messagesPerConnection || !transport.isConnected())) close();
+            if (transport == null) {
+                transport = impl.getSession().getTransport(Objects.requireNonNullElse(impl.getProtocol(), "smtp"));
+                transport.connect(impl.getHost(), impl.getPort(), impl.getUsername(), impl.getPassword());
+                sent = 0;
+            }
+            transport.sendMessage(msg, msg.getAllRecipients());
+            sent++;
+        }
+
+        @Override
+        public void close() {
+            if (transport == null) return;
+            try {
+                transport.close();
+            } catch (MessagingException ignored) {
+                // conexiunea era deja închisă
+            }
+            transport = null;
+        }
+    }
+}
@@ -6,12 +6,7 @@ import jakarta.mail.internet.MimeMessage;
 import jakarta.mail.util.ByteArrayDataSource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
@@ -19,12 +14,18 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.util.List;
+import java.util.Map;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class EmailSenderService {
+    static final String FROM_ADDRESS = "ostafie.ionut@gmail.com";
+    static final String FROM_NAME = "Acțiune pentru Sănătate";
+
     private final JavaMailSender javaMailSender;
+    private final EmailTemplates templates;
 
     @Value("${spring.mail.username}")
     private String EMAIL;
@@ -47,45 +48,40 @@ public class EmailSenderService {
             throw new RuntimeException(e);
         }
 
-        embedCidImagesIfPresent(emailContent, helper);
+        for (EmailTemplates.InlineImage img : templates.inlineImages(emailContent)) {
+            helper.addInline(img.cid(), img.content(), img.contentType());
+        }
 
         javaMailSender.send(msg);
         log.info("Successfully sent mail with attachment to <{}>.", sendTo);
     }
 
     public void sendEmail(String sendTo, String subject, String setMessage) throws MessagingException, UnsupportedEncodingException {
+        send(sendTo, subject, setMessage, templates.inlineImages(setMessage));
+    }
+
+    /** Compiled template: its inline images are already resolved, so the HTML is not parsed again. */
+    public void sendEmail(String sendTo, String subject, EmailTemplates.Template template, Map<String, ?> values)
+            throws MessagingException, UnsupportedEncodingException {
+        send(sendTo, subject, template.render(values), template.images());
+    }
+
+    private void send(String sendTo, String subject, String setMessage, List<EmailTemplates.InlineImage> images)
+            throws MessagingException, UnsupportedEncodingException {
         MimeMessage msg = javaMailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(msg, true, "UTF-8");
 
         String emailContent = setMessage;
 
-        helper.setFrom("ostafie.ionut@gmail.com", "Acțiune pentru Sănătate");
+        helper.setFrom(FROM_ADDRESS, FROM_NAME);
         helper.setTo(sendTo);
         helper.setSubject(subject);
         helper.setText(emailContent, true);
 
-        embedCidImagesIfPresent(emailContent, helper);
+        for (EmailTemplates.InlineImage img : images) helper.addInline(img.cid(), img.content(), img.contentType());
 
         javaMailSender.send(msg);
 
         log.info("Successfully sent mail to <{}>.", sendTo);
     }
-
-    private void embedCidImagesIfPresent(String emailContent, MimeMessageHelper helper) throws MessagingException {
-        Document document = Jsoup.parse(emailContent);
-        for (Element img : document.select("img[src^=cid:]")) {
-            String cid = img.attr("src").substring(4); // Extract the part after `cid:`
-
-            // Construct the assumed image file path
-            String imagePath = "images/" + cid; // Assuming images are in `src/main/resources/images/`
-
-            // Load the resource and add it to the email
-            Resource imageResource = new ClassPathResource(imagePath);
-            if (imageResource.exists()) {
-                helper.addInline(cid, imageResource);
-            } else {
-                throw new IllegalArgumentException("Image not found for cid: " + cid);
-            }
-        }
-    }
 }
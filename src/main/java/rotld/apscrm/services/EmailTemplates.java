@@ -0,0 +1,168 @@
+package rotld.apscrm.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Template-urile de email din {@code resources/template}, compilate o singură dată la pornire.
+ * <p>
+ * Un template devine o listă de segmente: bucăți de text fix și slot-uri {@code {{nume}}} între ele. Randarea
+ * doar concatenează segmentele cu valorile slot-urilor într-un buffer refolosit de thread, deci un email costă o
+ * copiere a template-ului – nu câte un {@link String#replace} (o trecere completă + un string nou) per placeholder.
+ * Valorile constante (URL-uri etc.) se pot lega dinainte cu {@link Template#with}.
+ * <p>
+ * Imaginile {@code cid:} ale fiecărui template se extrag și se citesc din classpath tot la compilare.
+ */
+@Slf4j
+@Service
+public class EmailTemplates {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final int MAX_BUFFER = 1 << 20;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(32 * 1024));
+
+    /** o imagine inline, citită o singură dată */
+    public record InlineImage(String cid, ByteArrayResource content, String contentType) {}
+
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+    private final Map<String, InlineImage> imageCache = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() throws IOException {
+        for (Resource r : new PathMatchingResourcePatternResolver().getResources("classpath*:template/*.html")) {
+            String name = r.getFilename();
+            templates.put(name, compile(name, r.getContentAsString(StandardCharsets.UTF_8)));
+        }
+        log.info("Template-uri email compilate: {}", templates.keySet());
+    }
+
+    /** @throws IllegalArgumentException dacă template-ul nu există */
+    public Template get(String name) {
+        Template t = templates.get(name);
+        if (t == null) throw new IllegalArgumentException("Template email necunoscut: " + name);
+        return t;
+    }
+
+    public Optional<Template> find(String name) {
+        return Optional.ofNullable(templates.get(name));
+    }
+
+    /** Imaginile {@code cid:} dintr-un HTML oarecare (nu dintr-un template compilat); conținutul lor e în cache. */
+    public List<InlineImage> inlineImages(String html) {
+        if (html == null || !html.contains("cid:")) return List.of();
+        Set<String> cids = new LinkedHashSet<>();
+        for (Element img : Jsoup.parse(html).select("img[src^=cid:]")) cids.add(img.attr("src").substring(4));
+        return cids.stream().map(cid -> imageCache.computeIfAbsent(cid, EmailTemplates::loadImage)).toList();
+    }
+
+    Template compile(String name, String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int p = 0;
+        while (true) {
+            int open = source.indexOf(OPEN, p);
+            int close = open < 0 ? -1 : source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) break;
+            literals.add(source.substring(p, open));
+            slots.add(source.substring(open + OPEN.length(), close).trim());
+            p = close + CLOSE.length();
+        }
+        literals.add(source.substring(p));
+        return new Template(name, literals.toArray(String[]::new), slots.toArray(String[]::new), inlineImages(source));
+    }
+
+    private static InlineImage loadImage(String cid) {
+        ClassPathResource resource = new ClassPathResource("images/" + cid);
+        if (!resource.exists()) throw new IllegalArgumentException("Image not found for cid: " + cid);
+        try {
+            String type = Objects.requireNonNullElse(URLConnection.guessContentTypeFromName(cid), "application/octet-stream");
+            return new InlineImage(cid, new ByteArrayResource(resource.getContentAsByteArray()), type);
+        } catch (IOException e) {
+            throw new IllegalStateException("Nu pot citi imaginea " + cid, e);
+        }
+    }
+
+    /**
+     * Un template compilat: {@code literals.length == slots.length + 1}, textul e
+     * {@code literals[0] slots[0] literals[1] … literals[n]}. Imutabil, deci folosit din orice thread.
+     */
+    public static final class Template {
+        private final String name;
+        private final String[] literals;
+        private final String[] slots;
+        private final List<InlineImage> images;
+        private final int length;
+
+        private Template(String name, String[] literals, String[] slots, List<InlineImage> images) {
+            this.name = name;
+            this.literals = literals;
+            this.slots = slots;
+            this.images = images;
+            int n = 0;
+            for (String l : literals) n += l.length();
+            this.length = n;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public List<InlineImage> images() {
+            return images;
+        }
+
+        /**
+         * HTML-ul cu valorile date; un slot fără valoare rămâne {@code {{nume}}}, ca la vechiul {@code replace}.
+         * Valorile se pun ca atare (fără escape), la fel ca înainte.
+         */
+        public String render(Map<String, ?> values) {
+            StringBuilder sb = BUFFER.get();
+            sb.setLength(0);
+            sb.ensureCapacity(length + 64 * slots.length);
+            for (int i = 0; i < slots.length; i++) {
+                sb.append(literals[i]);
+                Object v = values.get(slots[i]);
+                if (v != null) sb.append(v);
+                else sb.append(OPEN).append(slots[i]).append(CLOSE);
+            }
+            sb.append(literals[slots.length]);
+            String out = sb.toString();
+            if (sb.capacity() > MAX_BUFFER) BUFFER.remove();
+            return out;
+        }
+
+        /** Template nou cu slot-urile din {@code constants} înlocuite definitiv (ex: URL-urile fixe din footer). */
+        public Template with(Map<String, ?> constants) {
+            List<String> lits = new ArrayList<>();
+            List<String> rest = new ArrayList<>();
+            StringBuilder cur = new StringBuilder(literals[0]);
+            for (int i = 0; i < slots.length; i++) {
+                Object v = constants.get(slots[i]);
+                if (v != null) {
+                    cur.append(v).append(literals[i + 1]);
+                } else {
+                    lits.add(cur.toString());
+                    rest.add(slots[i]);
+                    cur = new StringBuilder(literals[i + 1]);
+                }
+            }
+            lits.add(cur.toString());
+            return new Template(name, lits.toArray(String[]::new), rest.toArray(String[]::new), images);
+        }
+    }
+}
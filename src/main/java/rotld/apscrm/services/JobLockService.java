@@ -0,0 +1,258 @@
+package rotld.apscrm.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Lease-uri în crm.scheduled_job_lock, ca fiecare job programat să ruleze pe un singur nod.
+ * <p>
+ * Un nod ia lease-ul doar dacă e expirat sau e deja al lui (UPDATE condiționat, deci atomic). La final lease-ul
+ * se eliberează și se scrie {@code last_completed_at} = momentul în care a fost luat: e watermark-ul job-ului.
+ * Cu {@code minInterval} o rulare se sare dacă ultima completă e prea recentă – acoperă ceasurile decalate
+ * între noduri la cron-urile zilnice / anuale. Momentele lease-ului și comparația cu {@code minInterval} sunt
+ * în timpul bazei de date ({@code NOW(3)}), nu al nodului.
+ * <p>
+ * Job-urile mari se împart pe {@code shards} lease-uri ({@code nume#i}). Shard-urile se atribuie determinist
+ * după rangul nodului între nodurile active (heartbeat-urile din crm.scheduled_job_node, sortate după id):
+ * nodul de rang r din n ia shard-urile cu {@code i mod n = r}, deci fiecare shard are exact un proprietar
+ * indiferent de momentul în care bifează fiecare nod. Un nod căzut iese din listă după
+ * {@code app.jobs.node-ttl-seconds} și shard-urile lui trec la ceilalți.
+ * <p>
+ * Heartbeat-ul rulează pe thread-ul lui, nu pe scheduler-ul Spring: un job lung (bulk mail, sweep-uri) nu îl
+ * poate întârzia peste TTL, altfel nodul ar ieși din listă și shard-urile s-ar muta în mijlocul unei rulări.
+ * Pentru cron-urile zilnice, un shard al cărui proprietar a căzut chiar înainte de declanșare e recuperat cu
+ * {@link #acquireUnfinished} de orice nod, după watermark-ul {@code last_completed_at}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class JobLockService {
+
+    private static final String ENSURE_SQL = """
+      INSERT INTO crm.scheduled_job_lock (name, locked_until) VALUES (:name, '1970-01-02')
+      ON DUPLICATE KEY UPDATE name = name
+    """;
+
+    private static final String ACQUIRE_SQL = """
+      UPDATE crm.scheduled_job_lock
+      SET locked_by = :node, locked_at = NOW(3), locked_until = DATE_ADD(NOW(3), INTERVAL :leaseMs * 1000 MICROSECOND)
+      WHERE name = :name AND (locked_until <= NOW(3) OR locked_by = :node)
+    """;
+
+    private static final String RELEASE_SQL = """
+      UPDATE crm.scheduled_job_lock
+      SET locked_until = NOW(3),
+          last_completed_at = CASE WHEN :completed THEN locked_at ELSE last_completed_at END
+      WHERE name = :name AND locked_by = :node
+    """;
+
+    /* totul în timpul bazei de date: ceasurile nodurilor pot fi decalate */
+    private static final String LEASE_SQL = """
+      SELECT locked_at, last_completed_at,
+             ((last_completed_at IS NOT NULL AND :minMs >= 0
+               AND last_completed_at > DATE_SUB(NOW(3), INTERVAL :minMs * 1000 MICROSECOND))
+              OR last_completed_at >= :doneSince) AS recent
+      FROM crm.scheduled_job_lock WHERE name = :name
+    """;
+
+    private static final String HEARTBEAT_SQL = """
+      INSERT INTO crm.scheduled_job_node (node_id, heartbeat_at) VALUES (:node, NOW(3))
+      ON DUPLICATE KEY UPDATE heartbeat_at = NOW(3)
+    """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Value("${app.jobs.node-id:}")
+    private String nodeId;
+
+    @Value("${app.jobs.node-ttl-seconds:90}")
+    private int nodeTtlSeconds;
+
+    @Value("${app.jobs.heartbeat-ms:30000}")
+    private long heartbeatMs;
+
+    private ScheduledExecutorService heartbeats;
+
+    /**
+     * Un lease obținut: {@code acquiredAt} devine {@code last_completed_at} la {@link #complete};
+     * {@code lastCompletedAt} e watermark-ul rulării precedente (null la prima rulare).
+     */
+    public record Lease(String name, int shard, int shards, Instant acquiredAt, Instant lastCompletedAt) {}
+
+    private record Acquired(Lease lease, boolean recent) {}
+
+    public String nodeId() {
+        if (nodeId == null || nodeId.isBlank()) nodeId = defaultNodeId();
+        return nodeId;
+    }
+
+    @PostConstruct
+    void start() {
+        heartbeats = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("job-heartbeat-", 0).daemon().factory());
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void heartbeat() {
+        try {
+            jdbc.update(HEARTBEAT_SQL, new MapSqlParameterSource("node", nodeId()));
+            jdbc.update("DELETE FROM crm.scheduled_job_node WHERE heartbeat_at < NOW(3) - INTERVAL :ttl SECOND",
+                    new MapSqlParameterSource("ttl", nodeTtlSeconds * 10));
+        } catch (Exception e) {
+            log.warn("Heartbeat job-uri: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void leave() {
+        heartbeats.shutdownNow();
+        try {
+            jdbc.update("DELETE FROM crm.scheduled_job_node WHERE node_id = :node", new MapSqlParameterSource("node", nodeId()));
+        } catch (Exception ignored) { }
+    }
+
+    /** Rulează {@code task} doar pe nodul care obține lease-ul; false dacă l-a luat altul sau rularea e prea recentă. */
+    public boolean runExclusive(String job, Duration lease, Duration minInterval, Consumer<Lease> task) {
+        Lease l = tryAcquire(job, 0, 1, lease, minInterval);
+        if (l == null) return false;
+        run(l, task);
+        return true;
+    }
+
+    /** Rulează {@code task} pentru fiecare shard obținut de nodul ăsta; întoarce câte shard-uri a rulat. */
+    public int runSharded(String job, int shards, Duration lease, Duration minInterval, Consumer<Lease> task) {
+        List<Lease> leases = acquireShards(job, shards, lease, minInterval);
+        for (Lease l : leases) run(l, task);
+        return leases.size();
+    }
+
+    /**
+     * Shard-urile atribuite nodului ăsta după rang ({@code shard mod noduri = rang}), dintre cele pe care le poate
+     * lua. Pentru job-urile care încarcă datele o singură dată pentru toate shard-urile; fiecare lease trebuie
+     * închis cu {@link #complete} / {@link #release}.
+     */
+    public List<Lease> acquireShards(String job, int shards, Duration lease, Duration minInterval) {
+        shards = Math.max(1, shards);
+        List<String> nodes = liveNodes();
+        int rank = nodes.indexOf(nodeId());
+        int n = nodes.size();
+        List<Lease> out = new ArrayList<>();
+        for (int shard = rank; shard < shards; shard += n) {
+            Lease l = tryAcquire(job, shard, shards, lease, minInterval);
+            if (l != null) out.add(l);
+        }
+        return out;
+    }
+
+    /**
+     * Recuperare pentru cron-uri: orice shard liber (indiferent de rang) care nu a fost completat din
+     * {@code doneSince} – ex. proprietarul a căzut chiar înainte de ora de declanșare și restul nodurilor
+     * l-au preluat abia după. Shard-urile în lucru au lease-ul ținut și sunt sărite.
+     */
+    public List<Lease> acquireUnfinished(String job, int shards, Duration lease, Instant doneSince) {
+        shards = Math.max(1, shards);
+        List<Lease> out = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            Lease l = tryAcquire(job, shard, shards, lease, null, doneSince);
+            if (l != null) out.add(l);
+        }
+        return out;
+    }
+
+    public void complete(Lease lease) {
+        release(lease, true);
+    }
+
+    public void release(Lease lease) {
+        release(lease, false);
+    }
+
+    private void run(Lease l, Consumer<Lease> task) {
+        boolean ok = false;
+        try {
+            task.accept(l);
+            ok = true;
+        } catch (Exception e) {
+            log.error("Job {} a eșuat pe {}: {}", l.name(), nodeId(), e.getMessage(), e);
+        } finally {
+            release(l, ok);
+        }
+    }
+
+    private Lease tryAcquire(String job, int shard, int shards, Duration lease, Duration minInterval) {
+        return tryAcquire(job, shard, shards, lease, minInterval, null);
+    }
+
+    private Lease tryAcquire(String job, int shard, int shards, Duration lease, Duration minInterval, Instant doneSince) {
+        String name = shards == 1 ? job : job + "#" + shard;
+        MapSqlParameterSource p = new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("node", nodeId())
+                .addValue("leaseMs", lease.toMillis())
+                .addValue("minMs", minInterval != null ? minInterval.toMillis() : -1)
+                .addValue("doneSince", doneSince != null ? Timestamp.from(doneSince) : null);
+        jdbc.update(ENSURE_SQL, p);
+        if (jdbc.update(ACQUIRE_SQL, p) != 1) return null;
+
+        Acquired a = jdbc.queryForObject(LEASE_SQL, p, (rs, i) -> {
+            Timestamp last = rs.getTimestamp("last_completed_at");
+            return new Acquired(new Lease(name, shard, shards, rs.getTimestamp("locked_at").toInstant(),
+                    last != null ? last.toInstant() : null), rs.getBoolean("recent"));
+        });
+        if (a.recent()) {
+            release(a.lease(), false);
+            log.debug("Job {}: rulat deja la {}, sărim", name, a.lease().lastCompletedAt());
+            return null;
+        }
+        return a.lease();
+    }
+
+    private void release(Lease l, boolean completed) {
+        try {
+            jdbc.update(RELEASE_SQL, new MapSqlParameterSource()
+                    .addValue("name", l.name())
+                    .addValue("node", nodeId())
+                    .addValue("completed", completed));
+        } catch (Exception e) {
+            // lease-ul expiră singur
+            log.warn("Nu am putut elibera lease-ul {}: {}", l.name(), e.getMessage());
+        }
+    }
+
+    /** nodurile active sortate după id; nodul curent e inclus chiar dacă heartbeat-ul lui nu a ajuns încă în tabelă */
+    private List<String> liveNodes() {
+        List<String> nodes = new ArrayList<>(jdbc.queryForList(
+                "SELECT node_id FROM crm.scheduled_job_node WHERE heartbeat_at > NOW(3) - INTERVAL :ttl SECOND",
+                new MapSqlParameterSource("ttl", nodeTtlSeconds), String.class));
+        if (!nodes.contains(nodeId())) nodes.add(nodeId());
+        Collections.sort(nodes);
+        return nodes;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + ":" + ProcessHandle.current().pid();
+    }
+}
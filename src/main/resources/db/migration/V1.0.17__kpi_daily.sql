@@ -0,0 +1,11 @@
+-- Istoric zilnic KPI (append-only): o valoare per (metrică, zi).
+-- Metricile "flow" (donații, formulare, voluntari noi) sunt totaluri pe zi;
+-- cele "gauge" (total voluntari, progres cauze) sunt valoarea din acea zi.
+-- Roll-up-urile pe săptămână / lună se fac din tabelul ăsta, fără rescanarea wp_postmeta.
+
+CREATE TABLE kpi_daily (
+    metric VARCHAR(40) NOT NULL,
+    day DATE NOT NULL,
+    value DECIMAL(19,2) NOT NULL,
+    PRIMARY KEY (metric, day)
+);
@@ -0,0 +1,6 @@
+-- Borderourile 230 se generează în streaming direct într-un fișier gzip, salvat ca BLOB.
+-- Coloana text veche rămâne pentru borderourile existente; cele noi au doar value_gz.
+
+ALTER TABLE borderouri
+    ADD COLUMN value_gz LONGBLOB NULL,
+    MODIFY value LONGTEXT NULL;
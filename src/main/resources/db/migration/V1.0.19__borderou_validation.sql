@@ -0,0 +1,6 @@
+-- Rezultatul validării borderoului 230 (XSD B230 + verificări CNP / IBAN pe rânduri),
+-- salvat la generare, ca să nu mai fie nevoie de recitirea XML-ului.
+
+ALTER TABLE borderouri
+    ADD COLUMN valid TINYINT(1) NULL,
+    ADD COLUMN validation_report LONGTEXT NULL;
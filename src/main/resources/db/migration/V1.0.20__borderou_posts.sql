@@ -0,0 +1,12 @@
+-- Formularele 230 incluse în fiecare borderou (ordinea = nr_poz) și dacă nr_borderou a fost deja
+-- scris pe wp_posts. Scrierea se face pe loturi, în tranzacții scurte; rândurile cu assigned = 0
+-- sunt reluate după o întrerupere (restart, eroare).
+
+CREATE TABLE borderou_posts (
+    borderou_id INT NOT NULL,
+    post_id BIGINT NOT NULL,
+    nr_poz INT NOT NULL,
+    assigned TINYINT(1) NOT NULL DEFAULT 0,
+    PRIMARY KEY (borderou_id, post_id),
+    INDEX idx_borderou_posts_pending (borderou_id, assigned, nr_poz)
+);
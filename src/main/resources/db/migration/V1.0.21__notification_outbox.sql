@@ -0,0 +1,27 @@
+-- Outbox pentru notificări push: rândul se scrie în aceeași tranzacție cu modificarea care îl declanșează
+-- și e trimis de relay abia după commit (un rollback îl șterge odată cu restul).
+-- idempotency_key deduplică intențiile repetate (retry de request, dublu click).
+-- Relay-ul revendică loturi cu SELECT ... FOR UPDATE SKIP LOCKED, deci mai multe noduri pot goli tabela în paralel.
+
+CREATE TABLE notification_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    idempotency_key VARCHAR(191) NOT NULL,
+    audience_kind VARCHAR(20) NOT NULL,
+    audience_user_id VARCHAR(255),
+    audience_role VARCHAR(40),
+    audience_premium TINYINT(1),
+    title VARCHAR(255) NOT NULL,
+    body VARCHAR(1000) NOT NULL,
+    data JSON,
+    status VARCHAR(10) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    available_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    claimed_by VARCHAR(100),
+    claimed_at DATETIME(3),
+    job_id VARCHAR(36),
+    last_error VARCHAR(500),
+    created_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    sent_at DATETIME(3),
+    UNIQUE KEY uk_notification_outbox_key (idempotency_key),
+    INDEX idx_notification_outbox_due (status, available_at, id)
+);
@@ -0,0 +1,4 @@
+-- Fusul orar al dispozitivului (IANA, ex: Europe/Bucharest), trimis la înregistrarea token-ului FCM.
+-- Reminder-ele se trimit la ora locală a utilizatorului; NULL = fusul implicit din app.reminders.default-zone.
+
+ALTER TABLE users ADD COLUMN time_zone VARCHAR(64) NULL;
@@ -0,0 +1,18 @@
+-- Lease-uri pentru job-urile programate, ca un job să ruleze pe un singur nod când aplicația are mai multe instanțe.
+-- Un nod ia lease-ul doar dacă e expirat (sau e deja al lui); last_completed_at e watermark-ul job-ului
+-- (intervalul deja procesat / ultima rulare), deci nodul care preia un job continuă de unde a rămas celălalt.
+-- Job-urile mari sunt împărțite pe shard-uri ("nume#i"), fiecare cu lease-ul lui.
+
+CREATE TABLE scheduled_job_lock (
+    name VARCHAR(100) PRIMARY KEY,
+    locked_by VARCHAR(100),
+    locked_at DATETIME(3),
+    locked_until DATETIME(3) NOT NULL,
+    last_completed_at DATETIME(3)
+);
+
+-- Nodurile active (heartbeat); numărul lor dă partea echitabilă de shard-uri per nod.
+CREATE TABLE scheduled_job_node (
+    node_id VARCHAR(100) PRIMARY KEY,
+    heartbeat_at DATETIME(3) NOT NULL
+);
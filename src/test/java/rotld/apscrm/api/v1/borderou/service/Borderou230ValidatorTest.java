@@ -0,0 +1,61 @@
+package rotld.apscrm.api.v1.borderou.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Borderou230ValidatorTest {
+
+    @Test
+    void acceptsValidCnpForEveryCenturyDigit() {
+        String[] valid = {
+                "1800101221144", "2800101221146", "3800101221148", "4800101221141",
+                "5800101221141", "6800101221143", "7800101221145", "8800101221147"
+        };
+        for (String cnp : valid) assertTrue(Borderou230Validator.validCnp(cnp), cnp);
+    }
+
+    @Test
+    void controlDigitTenBecomesOne() {
+        // Σ mod 11 = 10 pentru primele 12 cifre → cifra de control 1
+        assertTrue(Borderou230Validator.validCnp("1850315400071"));
+        assertFalse(Borderou230Validator.validCnp("1850315400070"));
+    }
+
+    @Test
+    void rejectsInvalidCnp() {
+        assertFalse(Borderou230Validator.validCnp("1800101221145"));   // cifra de control greșită
+        assertFalse(Borderou230Validator.validCnp("0800101221144"));   // prima cifră 0
+        assertFalse(Borderou230Validator.validCnp("180010122114"));    // 12 cifre
+        assertFalse(Borderou230Validator.validCnp("18001012211440"));  // 14 cifre
+        assertFalse(Borderou230Validator.validCnp("18001012211A4"));   // literă
+        assertFalse(Borderou230Validator.validCnp(" 1800101221144"));
+        assertFalse(Borderou230Validator.validCnp(""));
+        assertFalse(Borderou230Validator.validCnp(null));
+    }
+
+    @Test
+    void acceptsValidIban() {
+        assertTrue(Borderou230Validator.validIban("RO49AAAA1B31007593840000"));
+        assertTrue(Borderou230Validator.validIban("DE89370400440532013000"));
+        assertTrue(Borderou230Validator.validIban("GB82WEST12345698765432"));
+    }
+
+    @Test
+    void ibanIsCaseInsensitiveAndIgnoresSpaces() {
+        assertTrue(Borderou230Validator.validIban("ro49aaaa1b31007593840000"));
+        assertTrue(Borderou230Validator.validIban("RO49 AAAA 1B31 0075 9384 0000"));
+        assertTrue(Borderou230Validator.validIban("ro49 aaaa 1b31 0075 9384 0000"));
+    }
+
+    @Test
+    void rejectsInvalidIban() {
+        assertFalse(Borderou230Validator.validIban("RO49AAAA1B31007593840001"));  // mod 97 ≠ 1
+        assertFalse(Borderou230Validator.validIban("RO48AAAA1B31007593840000"));  // cifre de control greșite
+        assertFalse(Borderou230Validator.validIban("RO49AAAA1B3100759384000"));   // RO cu 23 de caractere
+        assertFalse(Borderou230Validator.validIban("RO49-AAAA-1B31-0075-9384-0000"));
+        assertFalse(Borderou230Validator.validIban("RO49AAAA"));
+        assertFalse(Borderou230Validator.validIban(""));
+        assertFalse(Borderou230Validator.validIban(null));
+    }
+}
@@ -0,0 +1,104 @@
+package rotld.apscrm.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhpSerializedTest {
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void decodesScalars() {
+        assertEquals("abc", PhpSerialized.decode(utf8("s:3:\"abc\";")));
+        assertEquals(-42L, PhpSerialized.decode(utf8("i:-42;")));
+        assertEquals(Boolean.TRUE, PhpSerialized.decode(utf8("b:1;")));
+        assertEquals(1.5, PhpSerialized.decode(utf8("d:1.5;")));
+        assertNull(PhpSerialized.decode(utf8("N;")));
+    }
+
+    @Test
+    void decodesNestedArrays() {
+        Object v = PhpSerialized.decode(utf8(
+                "a:2:{s:4:\"name\";s:3:\"Ana\";s:4:\"addr\";a:2:{s:4:\"city\";s:4:\"Iasi\";i:0;a:1:{i:0;b:0;}}}"));
+        Map<?, ?> root = assertInstanceOf(Map.class, v);
+        assertEquals("Ana", root.get("name"));
+        Map<?, ?> addr = assertInstanceOf(Map.class, root.get("addr"));
+        assertEquals("Iasi", addr.get("city"));
+        Map<?, ?> inner = assertInstanceOf(Map.class, addr.get("0"));
+        assertEquals(Boolean.FALSE, inner.get("0"));
+    }
+
+    @Test
+    void parseAssocFlattensNestedArraysWithTopLevelKeysWinning() {
+        Map<String, String> m = PhpSerialized.parseAssoc(
+                "a:3:{s:4:\"city\";s:3:\"Cluj\";s:4:\"more\";a:2:{s:4:\"city\";s:4:\"Iasi\";s:3:\"zip\";s:3:\"700\";}s:2:\"ok\";b:1;}");
+        assertEquals("Cluj", m.get("city"));
+        assertEquals("700", m.get("zip"));
+        assertEquals("1", m.get("ok"));
+        assertFalse(m.containsKey("more"));
+    }
+
+    @Test
+    void stringLengthIsCountedInUtf8Bytes() {
+        // "Ștefan": Ș e 2 bytes în UTF-8, deci 7 bytes pentru 6 caractere
+        assertEquals("Ștefan", PhpSerialized.decode(utf8("s:7:\"Ștefan\";")));
+        // 4 caractere românești cu diacritice = 8 bytes
+        Map<String, String> m = PhpSerialized.parseAssoc("a:2:{s:7:\"prenume\";s:8:\"ăîșț\";s:3:\"oraș\";s:4:\"Iasi\";}");
+        assertEquals("ăîșț", m.get("prenume"));
+        assertEquals("Iasi", m.get("oraș"));
+    }
+
+    @Test
+    void quotesAndTerminatorsInsideStringsAreKept() {
+        // PHP nu escapează ghilimelele; lungimea în bytes delimitează valoarea
+        assertEquals("say \"hi\"", PhpSerialized.decode(utf8("s:8:\"say \"hi\"\";")));
+        Map<String, String> m = PhpSerialized.parseAssoc("a:2:{s:1:\"a\";s:4:\"x\";y\";s:1:\"b\";s:1:\"z\";}");
+        assertEquals("x\";y", m.get("a"));
+        assertEquals("z", m.get("b"));
+    }
+
+    @Test
+    void wrongDeclaredLengthFallsBackToTerminator() {
+        // blob stricat de un search-replace: lungimea nu mai corespunde
+        Map<String, String> m = PhpSerialized.parseAssoc("a:2:{s:3:\"url\";s:5:\"https://x.ro\";s:1:\"k\";s:1:\"v\";}");
+        assertEquals("https://x.ro", m.get("url"));
+        assertEquals("v", m.get("k"));
+    }
+
+    @Test
+    void strictDecodeRejectsMalformedInput() {
+        assertThrows(IllegalArgumentException.class, () -> PhpSerialized.decode(utf8("x:1;")));
+        assertThrows(IllegalArgumentException.class, () -> PhpSerialized.decode(utf8("i:12a;")));
+        assertThrows(IllegalArgumentException.class, () -> PhpSerialized.decode(utf8("i:;")));
+        assertThrows(IllegalArgumentException.class, () -> PhpSerialized.decode(utf8("a:1:{i:0;i:1;]")));
+        assertThrows(IllegalArgumentException.class, () -> PhpSerialized.decode(utf8("i:1;i:2;")));
+    }
+
+    @Test
+    void strictDecodeRejectsTruncatedInput() {
+        assertThrows(IllegalArgumentException.class, () -> PhpSerialized.decode(utf8("s:5:\"ab")));
+        assertThrows(IllegalArgumentException.class, () -> PhpSerialized.decode(utf8("a:2:{i:0;s:1:\"x\";")));
+        assertThrows(IllegalArgumentException.class, () -> PhpSerialized.decode(utf8("i:12")));
+    }
+
+    @Test
+    void parseAssocKeepsWhatWasDecodedBeforeTruncation() {
+        Map<String, String> m = PhpSerialized.parseAssoc("a:3:{s:1:\"a\";s:1:\"1\";s:1:\"b\";s:1:\"2\";s:1:\"c\";s:4:\"tru");
+        assertEquals(Map.of("a", "1", "b", "2"), m);
+        assertTrue(PhpSerialized.parseAssoc("").isEmpty());
+        assertTrue(PhpSerialized.parseAssoc((String) null).isEmpty());
+    }
+
+    @Test
+    void unsignedReadsTheLeadingDigitsLikeMysqlCast() {
+        assertEquals(1500L, PhpSerialized.unsigned(" 1500 lei"));
+        assertEquals(0L, PhpSerialized.unsigned("abc"));
+        assertNull(PhpSerialized.unsigned(null));
+    }
+}